@@ -0,0 +1,239 @@
+/**
+ * This file is part of flint-meta and is licensed under the MIT License
+ */
+package net.flintloader.meta.fixtures;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import net.flintloader.meta.Constants;
+import net.flintloader.meta.models.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author HypherionSA
+ * Generates realistic upstream data for benchmarks and the load test stub, sized like the real mavens and launcher manifest
+ */
+public class Fixtures {
+
+    // Roughly what the Mojang manifest and the fabric yarn maven contain today
+    public static final int GAME_VERSIONS = 700;
+    public static final int YARN_BUILDS_PER_VERSION = 8;
+    public static final int LOADER_VERSIONS = 40;
+    public static final int INSTALLER_VERSIONS = 10;
+    public static final int API_VERSIONS_PER_GAME = 5;
+
+    private static final Gson GSON = new Gson();
+
+    private Fixtures() {
+    }
+
+    /**
+     * @return Game version ids, newest first, like the launcher manifest
+     */
+    public static List<String> gameVersionIds() {
+        List<String> ids = new ArrayList<>();
+
+        for (int i = 0; i < GAME_VERSIONS; i++) {
+            int minor = 20 - i / 35;
+            int patch = i % 35;
+            // A mix of releases, snapshots and pre-releases
+            if (patch % 5 == 0) {
+                ids.add("1." + minor + (patch == 0 ? "" : "." + patch / 5));
+            } else if (patch % 5 == 1) {
+                ids.add("1." + minor + "-pre" + patch);
+            } else {
+                ids.add((23 - i / 52) + "w" + String.format("%02d", i % 52 + 1) + "a");
+            }
+        }
+
+        return ids;
+    }
+
+    /**
+     * @param ids The game version ids
+     * @return The launcher manifest json for the versions
+     */
+    public static String launcherManifest(List<String> ids) {
+        JsonArray versions = new JsonArray();
+
+        for (String id : ids) {
+            JsonObject version = new JsonObject();
+            version.addProperty("id", id);
+            version.addProperty("type", id.startsWith("1.") && !id.contains("-") ? "release" : "snapshot");
+            version.addProperty("url", "https://piston-meta.mojang.com/v1/packages/0000000000000000000000000000000000000000/" + id + ".json");
+            version.addProperty("time", "2023-06-12T12:00:00+00:00");
+            version.addProperty("releaseTime", "2023-06-12T12:00:00+00:00");
+            versions.add(version);
+        }
+
+        JsonObject latest = new JsonObject();
+        latest.addProperty("release", ids.get(0));
+        latest.addProperty("snapshot", ids.get(0));
+
+        JsonObject manifest = new JsonObject();
+        manifest.add("latest", latest);
+        manifest.add("versions", versions);
+        return GSON.toJson(manifest);
+    }
+
+    /**
+     * @param ids The game version ids
+     * @return Yarn versions in maven-metadata.xml order, oldest first
+     */
+    public static List<String> yarnVersions(List<String> ids) {
+        List<String> versions = new ArrayList<>();
+
+        for (int i = ids.size() - 1; i >= 0; i--) {
+            for (int build = 1; build <= YARN_BUILDS_PER_VERSION; build++) {
+                versions.add(ids.get(i) + "+build." + build);
+            }
+        }
+
+        return versions;
+    }
+
+    /**
+     * Build a maven-metadata.xml file in the layout Reposilite writes
+     */
+    public static String mavenMetadata(String group, String artifact, List<String> versions) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<metadata>\n");
+        builder.append("  <groupId>").append(group).append("</groupId>\n");
+        builder.append("  <artifactId>").append(artifact).append("</artifactId>\n");
+        builder.append("  <versioning>\n");
+        builder.append("    <latest>").append(versions.get(versions.size() - 1)).append("</latest>\n");
+        builder.append("    <release>").append(versions.get(versions.size() - 1)).append("</release>\n");
+        builder.append("    <versions>\n");
+
+        for (String version : versions) {
+            builder.append("      <version>").append(version).append("</version>\n");
+        }
+
+        builder.append("    </versions>\n");
+        builder.append("    <lastUpdated>20231221214508</lastUpdated>\n");
+        builder.append("  </versioning>\n</metadata>\n");
+        return builder.toString();
+    }
+
+    /**
+     * @return A launcher meta file, as published next to each loader jar
+     */
+    public static JsonObject launcherMeta() {
+        try (InputStream stream = Fixtures.class.getResourceAsStream("/fixtures/launcher-meta.json")) {
+            return JsonParser.parseReader(new InputStreamReader(stream, StandardCharsets.UTF_8)).getAsJsonObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return Loader versions in maven-metadata.xml order, oldest first
+     */
+    public static List<String> loaderVersions() {
+        return numbered("0.1.", LOADER_VERSIONS);
+    }
+
+    /**
+     * @return Installer versions in maven-metadata.xml order, oldest first
+     */
+    public static List<String> installerVersions() {
+        return numbered("1.0.", INSTALLER_VERSIONS);
+    }
+
+    /**
+     * @param ids The game version ids
+     * @return Api versions for the newest game versions in maven-metadata.xml order, oldest first
+     */
+    public static List<String> apiVersions(List<String> ids) {
+        List<String> versions = new ArrayList<>();
+
+        for (String id : ids.subList(0, ids.size() / 10)) {
+            for (String version : numbered("1.0.", API_VERSIONS_PER_GAME)) {
+                versions.add(id + "-" + version);
+            }
+        }
+
+        Collections.reverse(versions);
+        return versions;
+    }
+
+    /**
+     * @return A full database worth of versions, as served by /v1/versions
+     */
+    public static AllVersions allVersions() {
+        List<String> ids = gameVersionIds();
+
+        List<GameVersion> game = new ArrayList<>();
+        List<IntermediaryVersion> intermediary = new ArrayList<>();
+        for (String id : ids) {
+            game.add(new GameVersion(id, !id.contains("w") && !id.contains("-")));
+            intermediary.add(new IntermediaryVersion(Constants.FABRIC_GROUP + ":intermediary:" + id, id, true));
+        }
+
+        List<LoaderVersion> loaders = new ArrayList<>();
+        for (String version : newestFirst(loaderVersions())) {
+            loaders.add(loader(version));
+        }
+
+        JsonArray yarn = new JsonArray();
+        for (String version : newestFirst(yarnVersions(ids))) {
+            JsonObject object = new JsonObject();
+            object.addProperty("gameVersion", version.substring(0, version.indexOf('+')));
+            object.addProperty("maven", Constants.FABRIC_GROUP + ":yarn:" + version);
+            object.addProperty("version", version);
+            object.addProperty("separator", "+build.");
+            object.addProperty("build", Integer.parseInt(version.substring(version.indexOf("+build.") + 7)));
+            object.addProperty("stable", false);
+            yarn.add(object);
+        }
+        // YarnVersion can only be built from maven artifacts, so it's read the same way the stored database is
+        List<YarnVersion> mappings = List.of(GSON.fromJson(yarn, YarnVersion[].class));
+
+        List<InstallerVersion> installers = new ArrayList<>();
+        for (String version : newestFirst(installerVersions())) {
+            installers.add(new InstallerVersion(url(Constants.INSTALLER_ARTIFACT, version), Constants.FLINT_GROUP + ":" + Constants.INSTALLER_ARTIFACT + ":" + version, version, true));
+        }
+
+        List<ApiVersion> api = new ArrayList<>();
+        for (String version : newestFirst(apiVersions(ids))) {
+            api.add(new ApiVersion(version, version.split("-")[0], Constants.FLINT_GROUP + ":" + Constants.FLINT_API + ":" + version, url(Constants.FLINT_API, version)));
+        }
+
+        return new AllVersions(game, loaders, mappings, intermediary, installers, api);
+    }
+
+    public static LoaderVersion loader(String version) {
+        return new LoaderVersion(version, Constants.FLINT_GROUP + ":" + Constants.LOADER_ARTIFACT + ":" + version, url(Constants.LOADER_ARTIFACT, version));
+    }
+
+    private static List<String> numbered(String prefix, int count) {
+        List<String> versions = new ArrayList<>();
+
+        for (int i = 1; i <= count; i++) {
+            versions.add(prefix + i);
+        }
+
+        return versions;
+    }
+
+    // The database lists everything newest first, the reverse of the maven metadata
+    private static List<String> newestFirst(List<String> versions) {
+        List<String> reversed = new ArrayList<>(versions);
+        Collections.reverse(reversed);
+        return reversed;
+    }
+
+    private static String url(String artifact, String version) {
+        return Constants.FLINT_MAVEN + Constants.FLINT_GROUP.replace('.', '/') + "/" + artifact + "/" + version + "/" + artifact + "-" + version + ".jar";
+    }
+}
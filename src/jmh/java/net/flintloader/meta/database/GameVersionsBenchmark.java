@@ -0,0 +1,44 @@
+/**
+ * This file is part of flint-meta and is licensed under the MIT License
+ */
+package net.flintloader.meta.database;
+
+import com.google.gson.Gson;
+import net.flintloader.meta.fixtures.Fixtures;
+import net.flintloader.meta.maven.MinecraftMaven;
+import net.flintloader.meta.models.IntermediaryVersion;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author HypherionSA
+ * Reconciling the intermediary versions against the launcher manifest, as done on every database update
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GameVersionsBenchmark {
+
+    private List<MinecraftMaven.Version> manifest;
+    private List<IntermediaryVersion> intermediary;
+
+    @Setup
+    public void setup() {
+        manifest = new Gson().fromJson(Fixtures.launcherManifest(Fixtures.gameVersionIds()), MinecraftMaven.class).getVersions();
+        intermediary = new ArrayList<>(Fixtures.allVersions().getIntermediary());
+        // The maven lists them oldest first
+        Collections.reverse(intermediary);
+    }
+
+    @Benchmark
+    public VersionsDatabase.GameVersions loadGameVersions() {
+        return VersionsDatabase.loadGameVersions(intermediary, manifest);
+    }
+}
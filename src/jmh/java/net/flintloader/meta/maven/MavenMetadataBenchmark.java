@@ -0,0 +1,61 @@
+/**
+ * This file is part of flint-meta and is licensed under the MIT License
+ */
+package net.flintloader.meta.maven;
+
+import net.flintloader.meta.Constants;
+import net.flintloader.meta.fixtures.Fixtures;
+import net.flintloader.meta.models.YarnVersion;
+import net.flintloader.meta.utils.StringPool;
+import org.openjdk.jmh.annotations.*;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author HypherionSA
+ * StAX parsing of a yarn sized maven-metadata.xml, and building the yarn versions from it
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MavenMetadataBenchmark {
+
+    private byte[] metadataXml;
+    private MavenRepository.ArtifactMetadata metadata;
+
+    @Setup
+    public void setup() {
+        List<String> versions = Fixtures.yarnVersions(Fixtures.gameVersionIds());
+        metadataXml = Fixtures.mavenMetadata(Constants.FABRIC_GROUP, Constants.YARN_ARTIFACT, versions).getBytes(StandardCharsets.UTF_8);
+        metadata = new MavenRepository(Constants.FLINT_MIRROR).new ArtifactMetadata(Constants.FABRIC_GROUP, Constants.YARN_ARTIFACT, new LinkedHashSet<>(versions));
+    }
+
+    @Benchmark
+    public Collection<String> parseMetadata() throws XMLStreamException {
+        Collection<String> versions = new LinkedHashSet<>();
+        MavenRepository.parseMetadata(new ByteArrayInputStream(metadataXml), versions);
+        return versions;
+    }
+
+    @Benchmark
+    public List<YarnVersion> yarnVersions() {
+        List<YarnVersion> versions = new ArrayList<>();
+        StringPool gameStrings = new StringPool();
+
+        for (MavenRepository.ArtifactMetadata.Artifact artifact : metadata) {
+            versions.add(YarnVersion.of(artifact, gameStrings));
+        }
+
+        return versions;
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * This file is part of flint-meta and is licensed under the MIT License
+ */
+package net.flintloader.meta.utils;
+
+import com.google.gson.JsonObject;
+import net.flintloader.meta.Constants;
+import net.flintloader.meta.fixtures.Fixtures;
+import net.flintloader.meta.models.IntermediaryVersion;
+import net.flintloader.meta.models.LoaderInfo;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author HypherionSA
+ * Building a launcher profile from a loader launcher meta file
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProfileBenchmark {
+
+    @Param({"client", "server"})
+    public String side;
+
+    private LoaderInfo info;
+
+    @Setup
+    public void setup() {
+        IntermediaryVersion intermediary = new IntermediaryVersion(Constants.FABRIC_GROUP + ":intermediary:1.20.1", "1.20.1", true);
+        info = new LoaderInfo(Fixtures.loader("0.1.0"), intermediary, Fixtures.launcherMeta());
+    }
+
+    @Benchmark
+    public JsonObject buildProfileJson() {
+        return ProfileUtils.buildProfileJson(info, side);
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * This file is part of flint-meta and is licensed under the MIT License
+ */
+package net.flintloader.meta.web;
+
+import com.google.gson.JsonObject;
+import net.flintloader.meta.fixtures.Fixtures;
+import net.flintloader.meta.models.AllVersions;
+import net.flintloader.meta.models.LoaderInfo;
+import net.flintloader.meta.models.LoaderVersion;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author HypherionSA
+ * Cost of turning each endpoint payload into a response body. pooledJson is what
+ * {@link WebServer#jsonResponse} does per request, prettyJson is the String based ?pretty path
+ * it replaced, and render is what a snapshot update does once
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"all", "game", "loaders", "yarn", "intermediary", "installers", "api", "loadersWithMeta"})
+    public String endpoint;
+
+    private Object payload;
+
+    @Setup
+    public void setup() {
+        AllVersions versions = Fixtures.allVersions();
+
+        payload = switch (endpoint) {
+            case "all" -> versions;
+            case "game" -> versions.getGame();
+            case "loaders" -> versions.getLoaders();
+            case "yarn" -> versions.getMappings();
+            case "intermediary" -> versions.getIntermediary();
+            case "installers" -> versions.getInstallers();
+            case "api" -> versions.getApi();
+            case "loadersWithMeta" -> {
+                JsonObject launcherMeta = Fixtures.launcherMeta();
+                List<LoaderInfo> infos = new ArrayList<>();
+
+                for (LoaderVersion loader : versions.getLoaders()) {
+                    infos.add(new LoaderInfo(loader, versions.getIntermediary().get(0), launcherMeta));
+                }
+
+                yield infos;
+            }
+            default -> throw new IllegalArgumentException(endpoint);
+        };
+    }
+
+    @Benchmark
+    public byte[] prettyJson() {
+        return WebServer.PRETTY_GSON.toJson(payload).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public int pooledJson() {
+        try (ResponseBuffer buffer = ResponseBuffer.acquire().json(WebServer.GSON, payload)) {
+            return CachedResponse.etag(buffer.array(), buffer.size()).length() + buffer.size();
+        }
+    }
+
+    @Benchmark
+    public CachedResponse render() {
+        return CachedResponse.of(payload, 0, null);
+    }
+}
@@ -0,0 +1,259 @@
+/**
+ * This file is part of flint-meta and is licensed under the MIT License
+ */
+package net.flintloader.meta.loadtest;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * @author HypherionSA
+ * Drives the /v1/versions endpoints with a launcher like traffic mix and reports latency percentiles per route.
+ * Versions are picked with a skew towards the newest ones, the same way real launcher traffic is skewed
+ */
+public class LoadGenerator {
+
+    private final String target;
+    private final boolean revalidate;
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    private final List<Route> routes = new ArrayList<>();
+    private int totalWeight;
+
+    private List<String> gameVersions;
+    private List<String> loaderVersions;
+    private List<String> apiGameVersions;
+
+    LoadGenerator(String target, boolean revalidate) {
+        this.target = target.endsWith("/") ? target.substring(0, target.length() - 1) : target;
+        this.revalidate = revalidate;
+
+        // Launchers mostly list loaders for a game version and then fetch a profile. Full lists are rare
+        route(30, "/loader/{game}");
+        route(25, "/loader/{game}/{loader}/profile/json");
+        route(15, "/game");
+        route(8, "/loader");
+        route(5, "/installer");
+        route(5, "/yarn/{game}");
+        route(4, "/intermediary/{game}");
+        route(4, "/api/{apiGame}");
+        route(2, "/loader/{game}/{loader}");
+        route(2, "/");
+    }
+
+    /**
+     * Usage: --target http://localhost:5806 --duration 60 --concurrency 32 [--revalidate]
+     */
+    public static void main(String[] args) throws Exception {
+        Arguments arguments = new Arguments(args);
+        LoadGenerator generator = new LoadGenerator(arguments.get("target", "http://localhost:5806"), arguments.has("revalidate"));
+        generator.discover();
+        generator.run(arguments.getInt("duration", 60), arguments.getInt("concurrency", 32));
+    }
+
+    private void route(int weight, String template) {
+        routes.add(new Route(weight, template));
+        totalWeight += weight;
+    }
+
+    /**
+     * Read the versions the target serves, so requests hit real entries
+     */
+    void discover() throws Exception {
+        gameVersions = readVersions("/game");
+        loaderVersions = readVersions("/loader");
+        // Only recent game versions have api builds
+        apiGameVersions = new ArrayList<>(new LinkedHashSet<>(readVersions("/api", "minecraft")));
+
+        if (gameVersions.isEmpty() || loaderVersions.isEmpty() || apiGameVersions.isEmpty())
+            throw new IllegalStateException("The target has no game, loader or api versions yet");
+
+        System.out.printf("Discovered %d game versions and %d loader versions%n", gameVersions.size(), loaderVersions.size());
+    }
+
+    void run(int seconds, int concurrency) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        long deadline = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+        List<Future<Map<String, Samples>>> workers = new ArrayList<>();
+
+        System.out.printf("Running %d workers against %s for %d seconds%n", concurrency, target, seconds);
+        for (int i = 0; i < concurrency; i++) {
+            workers.add(executor.submit(() -> work(deadline)));
+        }
+
+        // Every worker records into its own samples, so recording doesn't contend. They're merged at the end
+        Map<String, Samples> merged = new LinkedHashMap<>();
+        for (Route route : routes) {
+            merged.put(route.template, new Samples());
+        }
+        for (Future<Map<String, Samples>> worker : workers) {
+            worker.get().forEach((route, samples) -> merged.get(route).addAll(samples));
+        }
+
+        executor.shutdown();
+        report(merged, seconds);
+    }
+
+    private Map<String, Samples> work(long deadline) {
+        Map<String, Samples> samples = new HashMap<>();
+        Map<String, String> etags = new HashMap<>();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        while (System.nanoTime() < deadline) {
+            Route route = pick(random);
+            String path = route.template
+                    .replace("{game}", skewed(gameVersions, random))
+                    .replace("{loader}", skewed(loaderVersions, random))
+                    .replace("{apiGame}", skewed(apiGameVersions, random));
+
+            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(target + "/v1/versions" + path))
+                    .timeout(Duration.ofSeconds(30))
+                    .header("Accept-Encoding", "gzip")
+                    .GET();
+
+            String etag = etags.get(path);
+            if (etag != null)
+                request.header("If-None-Match", etag);
+
+            Samples routeSamples = samples.computeIfAbsent(route.template, k -> new Samples());
+            long start = System.nanoTime();
+
+            try {
+                HttpResponse<byte[]> response = client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+                routeSamples.add(System.nanoTime() - start, response.statusCode() >= 400);
+
+                if (revalidate)
+                    response.headers().firstValue("ETag").ifPresent(value -> etags.put(path, value));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                routeSamples.add(System.nanoTime() - start, true);
+            }
+        }
+
+        return samples;
+    }
+
+    private Route pick(Random random) {
+        int value = random.nextInt(totalWeight);
+
+        for (Route route : routes) {
+            value -= route.weight;
+
+            if (value < 0)
+                return route;
+        }
+
+        return routes.get(routes.size() - 1);
+    }
+
+    /**
+     * Pick a version from a newest first list, heavily skewed towards the start of the list
+     */
+    private static String skewed(List<String> versions, Random random) {
+        double value = random.nextDouble();
+        return versions.get((int) (value * value * value * versions.size()));
+    }
+
+    private List<String> readVersions(String path) throws Exception {
+        return readVersions(path, "version");
+    }
+
+    private List<String> readVersions(String path, String field) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(target + "/v1/versions" + path)).GET().build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        if (response.statusCode() != 200)
+            throw new IllegalStateException("Failed to read " + path + ": " + response.statusCode());
+
+        List<String> versions = new ArrayList<>();
+        for (JsonElement element : JsonParser.parseString(response.body()).getAsJsonArray()) {
+            versions.add(element.getAsJsonObject().get(field).getAsString());
+        }
+
+        return versions;
+    }
+
+    private static void report(Map<String, Samples> results, int seconds) {
+        System.out.printf("%n%-42s %9s %7s %9s %9s %9s %9s%n", "route", "requests", "errors", "p50 ms", "p99 ms", "p999 ms", "max ms");
+
+        long requests = 0;
+        for (Map.Entry<String, Samples> entry : results.entrySet()) {
+            Samples samples = entry.getValue();
+            requests += samples.size;
+
+            if (samples.size == 0)
+                continue;
+
+            long[] sorted = Arrays.copyOf(samples.values, samples.size);
+            Arrays.sort(sorted);
+
+            System.out.printf("%-42s %9d %7d %9.2f %9.2f %9.2f %9.2f%n",
+                    entry.getKey(),
+                    samples.size,
+                    samples.errors,
+                    percentile(sorted, 0.50),
+                    percentile(sorted, 0.99),
+                    percentile(sorted, 0.999),
+                    sorted[sorted.length - 1] / 1_000_000D);
+        }
+
+        System.out.printf("%nTotal: %d requests, %.1f requests/s%n", requests, requests / (double) seconds);
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1_000_000D;
+    }
+
+    private static class Route {
+        final int weight;
+        final String template;
+
+        Route(int weight, String template) {
+            this.weight = weight;
+            this.template = template;
+        }
+    }
+
+    /**
+     * Raw latency samples in nanoseconds. Kept unaggregated, so the tail percentiles are exact
+     */
+    private static class Samples {
+        long[] values = new long[1024];
+        int size;
+        int errors;
+
+        void add(long nanos, boolean error) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, size * 2);
+
+            values[size++] = nanos;
+            if (error)
+                errors++;
+        }
+
+        void addAll(Samples other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i], false);
+            }
+
+            errors += other.errors;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * This file is part of flint-meta and is licensed under the MIT License
+ */
+package net.flintloader.meta.loadtest;
+
+import io.javalin.Javalin;
+import io.javalin.http.Context;
+import io.javalin.http.Header;
+import net.flintloader.meta.Constants;
+import net.flintloader.meta.fixtures.Fixtures;
+import net.flintloader.meta.web.CachedResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * @author HypherionSA
+ * Local stand-in for the flint maven, the fabric mirror and the Mojang manifest, serving fixture data.
+ * Latency can be injected to reproduce slow upstreams. Point flint-meta at it with
+ * -Dflintmeta.maven.url=http://localhost:5807/releases/ -Dflintmeta.mirror.url=http://localhost:5807/mirror/
+ * -Dflintmeta.manifest.url=http://localhost:5807/mojang/version_manifest.json
+ */
+public class UpstreamStub {
+
+    private final Map<String, byte[]> metadata = new HashMap<>();
+    private final byte[] manifest;
+    private final byte[] launcherMeta;
+    private final int latency;
+    private final int jitter;
+
+    UpstreamStub(int latency, int jitter) {
+        this.latency = latency;
+        this.jitter = jitter;
+
+        List<String> ids = Fixtures.gameVersionIds();
+        // Intermediary is published oldest first, like every other maven-metadata.xml
+        List<String> intermediary = new ArrayList<>(ids);
+        Collections.reverse(intermediary);
+
+        addMetadata(Constants.FLINT_GROUP, Constants.LOADER_ARTIFACT, Fixtures.loaderVersions());
+        addMetadata(Constants.FLINT_GROUP, Constants.INSTALLER_ARTIFACT, Fixtures.installerVersions());
+        addMetadata(Constants.FLINT_GROUP, Constants.FLINT_API, Fixtures.apiVersions(ids));
+        addMetadata(Constants.FABRIC_GROUP, Constants.YARN_ARTIFACT, Fixtures.yarnVersions(ids));
+        addMetadata(Constants.FABRIC_GROUP, Constants.INTERMEDIARY_ARTIFACT, intermediary);
+
+        this.manifest = Fixtures.launcherManifest(ids).getBytes(StandardCharsets.UTF_8);
+        this.launcherMeta = Fixtures.launcherMeta().toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static void main(String[] args) {
+        Arguments arguments = new Arguments(args);
+        UpstreamStub stub = new UpstreamStub(arguments.getInt("latency-ms", 0), arguments.getInt("jitter-ms", 0));
+        stub.start(arguments.getInt("port", 5807));
+    }
+
+    void start(int port) {
+        Javalin javalin = Javalin.create(config -> config.showJavalinBanner = false);
+
+        javalin.before(ctx -> delay());
+        javalin.get("/releases/net/flintloader/{artifact}/maven-metadata.xml", ctx -> serveMetadata(ctx, Constants.FLINT_GROUP));
+        javalin.get("/mirror/net/fabricmc/{artifact}/maven-metadata.xml", ctx -> serveMetadata(ctx, Constants.FABRIC_GROUP));
+        // Every loader version shares the same launcher meta file
+        javalin.get("/releases/net/flintloader/" + Constants.LOADER_ARTIFACT + "/{version}/{file}", ctx -> serve(ctx, launcherMeta, "application/json"));
+        javalin.get("/mojang/version_manifest.json", ctx -> serve(ctx, manifest, "application/json"));
+
+        javalin.start(port);
+    }
+
+    private void addMetadata(String group, String artifact, List<String> versions) {
+        metadata.put(group + ":" + artifact, Fixtures.mavenMetadata(group, artifact, versions).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void serveMetadata(Context ctx, String group) {
+        byte[] body = metadata.get(group + ":" + ctx.pathParam("artifact"));
+
+        if (body == null) {
+            ctx.status(404);
+            return;
+        }
+
+        serve(ctx, body, "application/xml");
+    }
+
+    /**
+     * Send a fixture file, answering conditional requests the same way the real mavens do
+     */
+    private static void serve(Context ctx, byte[] body, String contentType) {
+        String etag = CachedResponse.etag(body);
+        ctx.header(Header.ETAG, etag);
+
+        if (etag.equals(ctx.header(Header.IF_NONE_MATCH))) {
+            ctx.status(304);
+            return;
+        }
+
+        ctx.contentType(contentType).result(body);
+    }
+
+    private void delay() throws InterruptedException {
+        int delay = latency + (jitter > 0 ? ThreadLocalRandom.current().nextInt(jitter + 1) : 0);
+
+        if (delay > 0)
+            Thread.sleep(delay);
+    }
+}
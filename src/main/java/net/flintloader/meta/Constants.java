@@ -3,6 +3,8 @@
  */
 package net.flintloader.meta;
 
+import java.util.Locale;
+
 /**
  * @author HypherionSA
  * Constant values used throughout the program
@@ -14,8 +16,37 @@ public class Constants {
     public static final String FLINT_GROUP = "net.flintloader";
     public static final String FABRIC_GROUP = "net.fabricmc";
 
-    public static final String FLINT_MAVEN = "https://maven.flintloader.net/releases/";
-    public static final String FLINT_MIRROR = "https://maven.flintloader.net/mirror/";
+    // Upstream sources. These can be pointed at a local stub server for load testing
+    public static final String FLINT_MAVEN = property("maven.url", "https://maven.flintloader.net/releases/");
+    public static final String FLINT_MIRROR = property("mirror.url", "https://maven.flintloader.net/mirror/");
+    public static final String MINECRAFT_MANIFEST = property("manifest.url", "https://launchermeta.mojang.com/mc/game/version_manifest.json");
+
+    public static final int PORT = Integer.parseInt(property("port", "5806"));
+
+    // Releases are picked up through the refresh webhook, so polling is only a safety net for missed notifications
+    public static final long POLL_INTERVAL_MINUTES = Long.parseLong(property("poll.interval", "30"));
+    // Bearer token for the admin endpoints. The admin endpoints are disabled when it's not set
+    public static final String ADMIN_TOKEN = property("admin.token", null);
+
+    // Base url of the leader node, for example http://meta-leader:5806. When set, this node is a follower that copies
+    // every generation from the leader, and never polls the upstream sources itself
+    public static final String LEADER_URL = property("leader.url", null);
+    // How often followers check the leader for a new generation
+    public static final long REPLICATION_INTERVAL_SECONDS = Long.parseLong(property("replication.interval", "10"));
+
+    // Requests per minute per client for the versions endpoints, and how many can be sent at once. A rate of 0 disables the limit
+    public static final double RATE_LIMIT = Double.parseDouble(property("ratelimit.rate", "600"));
+    public static final double RATE_LIMIT_BURST = Double.parseDouble(property("ratelimit.burst", "120"));
+    // The same for the loader endpoints for a game version, which can fetch launcher meta from the maven
+    public static final double LOADER_RATE_LIMIT = Double.parseDouble(property("ratelimit.loader.rate", "120"));
+    public static final double LOADER_RATE_LIMIT_BURST = Double.parseDouble(property("ratelimit.loader.burst", "30"));
+    // Comma separated API keys. Clients sending one in X-API-Key are limited per key, with the limits multiplied
+    public static final String RATE_LIMIT_KEYS = property("ratelimit.keys", "");
+    public static final double RATE_LIMIT_KEY_MULTIPLIER = Double.parseDouble(property("ratelimit.key.multiplier", "10"));
+    // Identify clients by X-Forwarded-For. Only enable this behind a proxy that sets it
+    public static final boolean RATE_LIMIT_FORWARDED_FOR = Boolean.parseBoolean(property("ratelimit.forwarded", "false"));
+    // Maximum number of clients tracked at once, the least recently seen are forgotten first
+    public static final int RATE_LIMIT_CLIENTS = Integer.parseInt(property("ratelimit.clients", "65536"));
 
     public static final String LOADER_ARTIFACT = "punch";
 
@@ -24,6 +55,26 @@ public class Constants {
     public static final String FLINT_API = "flint-api";
     public static final String INTERMEDIARY_ARTIFACT = "intermediary";
 
+    // Where the last database update is stored, so the server can start without waiting on the mavens
+    public static final String DATABASE_FILE = property("database.file", "data/database.json.gz");
+    // Directory the versions endpoints are written to after every update, for serving them as static files. Disabled when not set
+    public static final String EXPORT_DIR = property("export.dir", null);
+
+    /**
+     * Read a setting from the system properties (flintmeta.name) or the environment (FLINTMETA_NAME)
+     * @param name The name of the setting
+     * @param fallback The value to use when the setting is missing
+     * @return The configured value, or the fallback
+     */
+    private static String property(String name, String fallback) {
+        String value = System.getProperty("flintmeta." + name);
+
+        if (value == null)
+            value = System.getenv("FLINTMETA_" + name.toUpperCase(Locale.ROOT).replace('.', '_'));
+
+        return value == null || value.isBlank() ? fallback : value;
+    }
+
     private Constants() {
     }
 
@@ -3,15 +3,18 @@
  */
 package net.flintloader.meta;
 
+import net.flintloader.meta.cache.LauncherMetaCache;
+import net.flintloader.meta.cache.ProfileCache;
+import net.flintloader.meta.database.RefreshScheduler;
 import net.flintloader.meta.database.VersionsDatabase;
+import net.flintloader.meta.metrics.Metrics;
+import net.flintloader.meta.web.StaticExporter;
 import net.flintloader.meta.web.WebServer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.nio.file.Path;
 
 /**
  * @author HypherionSA
@@ -21,18 +24,42 @@ public class FlintMeta {
 
     public static final Logger LOGGER = LoggerFactory.getLogger(FlintMeta.class);
     public static final VersionsDatabase versionsDatabase = new VersionsDatabase();
-    private static final ScheduledExecutorService executor = Executors.newScheduledThreadPool(1);
+    public static final LauncherMetaCache launcherMetaCache = new LauncherMetaCache();
+    public static final ProfileCache profileCache = new ProfileCache();
+    public static final RefreshScheduler refreshScheduler = new RefreshScheduler(versionsDatabase,
+            Constants.EXPORT_DIR == null ? null : new StaticExporter(Path.of(Constants.EXPORT_DIR)));
 
     public static void main(String[] args) throws IOException {
-        versionsDatabase.generateDatabase();
+        if (Constants.LEADER_URL != null) {
+            // Followers copy the leader, and only wait for it when there is nothing stored to serve.
+            // If the leader is down as well, the API answers 503 until the replication poll reaches it
+            if (!versionsDatabase.loadFromDisk()) {
+                try {
+                    versionsDatabase.replicate(Constants.LEADER_URL);
+                } catch (IOException e) {
+                    LOGGER.warn("Failed to replicate from {}, starting without versions: {}", Constants.LEADER_URL, e.toString());
+                }
+            }
+        } else if (versionsDatabase.loadFromDisk()) {
+            // Serve the stored database straight away, and update it in the background
+            refreshScheduler.refreshNow();
+        } else {
+            versionsDatabase.generateDatabase();
+        }
+
+        Metrics.gauge("flintmeta_snapshot_age_seconds", "Time since the served versions were generated",
+                () -> versionsDatabase.isReady() ? (System.currentTimeMillis() - versionsDatabase.getSnapshot().getGeneratedAt()) / 1000D : Double.NaN);
+        Metrics.gauge("flintmeta_snapshot_generation", "Generation of the served versions, the same on a leader and its followers. 0 before the first one is loaded",
+                () -> versionsDatabase.isReady() ? versionsDatabase.getSnapshot().getGeneration() : 0);
+
         WebServer.start();
 
-        executor.scheduleAtFixedRate(() -> {
-            try {
-                versionsDatabase.generateDatabase();
-            } catch (Exception e) {
-                LOGGER.error("Failed to update versions database", e);
-            }
-        }, 2, 2, TimeUnit.MINUTES);
+        refreshScheduler.exportNow();
+
+        if (Constants.LEADER_URL != null) {
+            refreshScheduler.follow(Constants.LEADER_URL, Constants.REPLICATION_INTERVAL_SECONDS);
+        } else {
+            refreshScheduler.start(Constants.POLL_INTERVAL_MINUTES);
+        }
     }
 }
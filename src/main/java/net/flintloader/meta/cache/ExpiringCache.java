@@ -0,0 +1,168 @@
+/**
+ * This file is part of flint-meta and is licensed under the MIT License
+ */
+package net.flintloader.meta.cache;
+
+import net.flintloader.meta.metrics.Metrics;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author HypherionSA
+ * Size bounded cache where entries expire after a fixed time. Concurrent misses for the same key
+ * share a single load, and null results can be cached for a different amount of time than values
+ * @param <V> The type of the cached values
+ */
+public class ExpiringCache<V> {
+
+    private final String name;
+    private final int maxEntries;
+    private final long ttl;
+    private final long nullTtl;
+    private final Map<String, Entry<V>> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @param name The name of the cache, used as the cache label of the hit and miss metrics
+     * @param maxEntries The maximum number of entries to keep
+     * @param ttl How long values stay cached, in milliseconds
+     * @param nullTtl How long null results stay cached, in milliseconds. 0 to not cache them
+     */
+    public ExpiringCache(String name, int maxEntries, long ttl, long nullTtl) {
+        this.name = name;
+        this.maxEntries = maxEntries;
+        this.ttl = ttl;
+        this.nullTtl = nullTtl;
+    }
+
+    /**
+     * Get a value from the cache, loading it if it's missing or expired
+     * @param key The key of the value
+     * @param loader Loads the value. Exceptions are passed on to every caller waiting for this load, and are not cached
+     * @return The cached or loaded value
+     * @throws CompletionException Thrown when the loader failed
+     */
+    @Nullable
+    public V get(String key, Callable<V> loader) {
+        long now = System.currentTimeMillis();
+        Entry<V> created = new Entry<>();
+        Entry<V> entry = entries.compute(key, (k, existing) -> existing == null || existing.isExpired(now) ? created : existing);
+
+        if (entry == created) {
+            Metrics.CACHE_MISSES.inc(name);
+            load(key, entry, loader);
+            evict(now);
+        } else {
+            Metrics.CACHE_HITS.inc(name);
+        }
+
+        return entry.result.join();
+    }
+
+    /**
+     * Get a value if it's cached and not expired, without loading it
+     * @param key The key of the value
+     * @return The cached value, or null when it's missing, expired or still loading
+     */
+    @Nullable
+    public V getIfPresent(String key) {
+        Entry<V> entry = entries.get(key);
+
+        if (entry == null || entry.isExpired(System.currentTimeMillis()) || !entry.result.isDone() || entry.result.isCompletedExceptionally()) {
+            Metrics.CACHE_MISSES.inc(name);
+            return null;
+        }
+
+        Metrics.CACHE_HITS.inc(name);
+        return entry.result.join();
+    }
+
+    /**
+     * Check if a key has a loaded value or null result, without loading it or counting a hit or miss
+     * @param key The key of the value
+     * @return True when the key is loaded and not expired. Failed loads are never cached
+     */
+    public boolean contains(String key) {
+        Entry<V> entry = entries.get(key);
+        return entry != null && !entry.isExpired(System.currentTimeMillis()) && entry.result.isDone() && !entry.result.isCompletedExceptionally();
+    }
+
+    /**
+     * Store a value that was loaded outside the cache
+     * @param key The key of the value
+     * @param value The value to store
+     */
+    public void put(String key, V value) {
+        long now = System.currentTimeMillis();
+        Entry<V> entry = new Entry<>();
+        entry.expiresAt = now + ttl;
+        entry.result.complete(value);
+        entries.put(key, entry);
+        evict(now);
+    }
+
+    /**
+     * Remove all entries from the cache
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    private void load(String key, Entry<V> entry, Callable<V> loader) {
+        try {
+            V value = loader.call();
+
+            if (value == null && nullTtl <= 0) {
+                entries.remove(key, entry);
+            } else {
+                entry.expiresAt = System.currentTimeMillis() + (value == null ? nullTtl : ttl);
+            }
+
+            entry.result.complete(value);
+        } catch (Exception e) {
+            // Don't cache failures, the next request will try again
+            entries.remove(key, entry);
+            entry.result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Remove expired entries, and the oldest entries if the cache is still too large
+     * @param now The current time
+     */
+    private void evict(long now) {
+        if (entries.size() <= maxEntries)
+            return;
+
+        entries.values().removeIf(e -> e.isExpired(now));
+
+        while (entries.size() > maxEntries) {
+            Map.Entry<String, Entry<V>> oldest = null;
+
+            for (Map.Entry<String, Entry<V>> e : entries.entrySet()) {
+                if (oldest == null || e.getValue().expiresAt < oldest.getValue().expiresAt) {
+                    oldest = e;
+                }
+            }
+
+            if (oldest == null)
+                return;
+
+            entries.remove(oldest.getKey(), oldest.getValue());
+        }
+    }
+
+    private static class Entry<V> {
+        final CompletableFuture<V> result = new CompletableFuture<>();
+        // Entries that are still loading never expire, so other requests wait for them
+        volatile long expiresAt = Long.MAX_VALUE;
+
+        boolean isExpired(long now) {
+            return expiresAt <= now;
+        }
+    }
+}
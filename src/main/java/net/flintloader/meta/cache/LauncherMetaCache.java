@@ -0,0 +1,68 @@
+/**
+ * This file is part of flint-meta and is licensed under the MIT License
+ */
+package net.flintloader.meta.cache;
+
+import com.google.gson.JsonObject;
+import net.flintloader.meta.Constants;
+import net.flintloader.meta.utils.RemoteJsonReader;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.FileNotFoundException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static net.flintloader.meta.FlintMeta.LOGGER;
+
+/**
+ * @author HypherionSA
+ * Size bounded cache for loader launcher meta files, keyed by the maven coordinate of the loader.
+ * Concurrent misses for the same loader share a single upstream fetch, and loaders without a
+ * launcher meta file (404) are remembered for a shorter time, so they don't hit the maven on every request
+ */
+public class LauncherMetaCache {
+
+    private final ExpiringCache<JsonObject> cache = new ExpiringCache<>("launcher_meta", 512, TimeUnit.MINUTES.toMillis(10), TimeUnit.MINUTES.toMillis(2));
+
+    /**
+     * Get the launcher meta for a loader, fetching it from the maven if it's not cached
+     * @param mavenId The maven coordinate of the loader, for example net.flintloader:punch:1.0.0
+     * @return The launcher meta, or null if it doesn't exist or could not be loaded.
+     * The returned object is shared and MUST NOT be modified
+     */
+    @Nullable
+    public JsonObject get(String mavenId) {
+        try {
+            return cache.get(mavenId, () -> {
+                try {
+                    return RemoteJsonReader.readJsonFromUrl(launcherMetaUrl(mavenId));
+                } catch (FileNotFoundException e) {
+                    return null;
+                }
+            });
+        } catch (CompletionException e) {
+            LOGGER.error("Failed to load launcher meta for {}", mavenId, e.getCause());
+            return null;
+        }
+    }
+
+    /**
+     * @param mavenId The maven coordinate of the loader
+     * @return True when the launcher meta of the loader is cached, or is cached as missing. False when it's not loaded, or failed to load
+     */
+    public boolean isKnown(String mavenId) {
+        return cache.contains(mavenId);
+    }
+
+    /**
+     * Build the maven url of the launcher meta file for a loader
+     * @param mavenId The maven coordinate of the loader
+     * @return The url to the json file
+     */
+    private static String launcherMetaUrl(String mavenId) {
+        String[] split = mavenId.split(":");
+        String path = String.format("%s/%s/%s", split[0].replaceAll("\\.", "/"), split[1], split[2]);
+        String filename = String.format("%s-%s.json", split[1], split[2]);
+        return String.format("%s%s/%s", Constants.FLINT_MAVEN, path, filename);
+    }
+}
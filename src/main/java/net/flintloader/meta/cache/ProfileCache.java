@@ -0,0 +1,62 @@
+/**
+ * This file is part of flint-meta and is licensed under the MIT License
+ */
+package net.flintloader.meta.cache;
+
+import com.google.gson.JsonObject;
+import net.flintloader.meta.models.IntermediaryVersion;
+import net.flintloader.meta.models.LoaderVersion;
+import net.flintloader.meta.web.CachedResponse;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * @author HypherionSA
+ * Cache of rendered launcher profiles per loader version, game version and side,
+ * and of profile zips for the most requested combinations, so the profile routes can be served from memory
+ */
+public class ProfileCache {
+
+    private final ExpiringCache<CachedResponse> cache = new ExpiringCache<>("profile", 1024, TimeUnit.MINUTES.toMillis(10), 0);
+    // Profile zips are only requested by installers, so fewer of them are kept
+    private final ExpiringCache<byte[]> zips = new ExpiringCache<>("profile_zip", 256, TimeUnit.MINUTES.toMillis(10), 0);
+
+    /**
+     * Get a rendered profile, building it on the first request
+     * @param loader The loader version
+     * @param intermediary The intermediary mappings of the game version
+     * @param side The side of the profile, client or server
+     * @param builder Builds the profile json
+     * @return The rendered profile
+     */
+    public CachedResponse get(LoaderVersion loader, IntermediaryVersion intermediary, String side, Supplier<JsonObject> builder) {
+        return cache.get(key(loader, intermediary, side), () -> CachedResponse.onRequest(builder.get(), System.currentTimeMillis()));
+    }
+
+    /**
+     * Get a finished profile zip, if it was built before
+     * @param loader The loader version
+     * @param intermediary The intermediary mappings of the game version
+     * @return The zip file, or null when it's not cached
+     */
+    @Nullable
+    public byte[] getZip(LoaderVersion loader, IntermediaryVersion intermediary) {
+        return zips.getIfPresent(key(loader, intermediary, "zip"));
+    }
+
+    /**
+     * Keep a finished profile zip in memory
+     * @param loader The loader version
+     * @param intermediary The intermediary mappings of the game version
+     * @param zip The zip file
+     */
+    public void putZip(LoaderVersion loader, IntermediaryVersion intermediary, byte[] zip) {
+        zips.put(key(loader, intermediary, "zip"), zip);
+    }
+
+    private static String key(LoaderVersion loader, IntermediaryVersion intermediary, String variant) {
+        return loader.getVersion() + "/" + intermediary.getVersion() + "/" + variant;
+    }
+}
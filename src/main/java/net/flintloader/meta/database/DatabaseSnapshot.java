@@ -0,0 +1,213 @@
+/**
+ * This file is part of flint-meta and is licensed under the MIT License
+ */
+package net.flintloader.meta.database;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import net.flintloader.meta.cache.ExpiringCache;
+import net.flintloader.meta.models.AllVersions;
+import net.flintloader.meta.models.GameVersion;
+import net.flintloader.meta.models.VersionChanges;
+import net.flintloader.meta.web.CachedResponse;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+/**
+ * @author HypherionSA
+ * One immutable generation of the database: the version lists, pre-rendered responses for the list endpoints and lookup indexes.
+ * A new snapshot is built after every database update and swapped in as a whole, so requests never see lists from
+ * different updates, and never serialize or scan the lists themselves
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class DatabaseSnapshot {
+
+    private final long generation;
+    private final long generatedAt;
+    private final AllVersions versions;
+    private final VersionIndex index;
+    private final CachedResponse all;
+    private final CachedResponse game;
+    private final CachedResponse loaders;
+    private final CachedResponse mappings;
+    private final CachedResponse intermediary;
+    private final CachedResponse installers;
+    private final CachedResponse api;
+    // Newest entry of every list, by list name, and by list name + "/stable" for the newest release.
+    // Lists without any matching entry have no response
+    @Getter(AccessLevel.NONE)
+    private final Map<String, CachedResponse> latest;
+
+    // Loader lists with launcher meta per game version. These need the launcher meta of every loader,
+    // so they are rendered on request instead of during the update. Only the most requested game versions are kept
+    @Getter(AccessLevel.NONE)
+    private final ExpiringCache<CachedResponse> loadersByGame = new ExpiringCache<>("loader_list", 64, TimeUnit.MINUTES.toMillis(10), 0);
+
+    // Changes feed responses, by the generation they start from. Bounded by the history kept in the database
+    @Getter(AccessLevel.NONE)
+    private final Map<Long, CachedResponse> changesSince = new ConcurrentHashMap<>();
+
+    // The whole generation in the stored format, for follower nodes. Rendered on the first request
+    @Getter(AccessLevel.NONE)
+    private final AtomicReference<byte[]> replica = new AtomicReference<>();
+
+    /**
+     * @param gameVersion The game version of the list
+     * @return The rendered loader list for a game version, or null when it's not cached
+     */
+    @Nullable
+    public CachedResponse getLoadersForGame(String gameVersion) {
+        return loadersByGame.getIfPresent(gameVersion);
+    }
+
+    /**
+     * Keep a rendered loader list for later requests. Only pass lists where the launcher meta of every loader was loaded
+     * @param gameVersion The game version of the list
+     * @param response The rendered list
+     */
+    public void putLoadersForGame(String gameVersion, CachedResponse response) {
+        loadersByGame.put(gameVersion, response);
+    }
+
+    /**
+     * Get the newest entry of a list
+     * @param list The list: game, loader, yarn, intermediary, installer or api
+     * @param stable Only consider releases
+     * @return The pre-rendered entry, or null when the list is unknown or has no matching entry
+     */
+    @Nullable
+    public CachedResponse getLatest(String list, boolean stable) {
+        return latest.get(stable ? list + "/stable" : list);
+    }
+
+    /**
+     * Get the rendered changes since an older generation, rendering them on the first call
+     * @param since The generation the client has
+     * @param older The contents of that generation
+     * @return The pre-rendered response
+     */
+    public CachedResponse getChangesSince(long since, AllVersions older) {
+        CachedResponse response = changesSince.get(since);
+
+        if (response == null) {
+            response = CachedResponse.onRequest(VersionChanges.between(since, older, generation, versions), generatedAt);
+            CachedResponse existing = changesSince.putIfAbsent(since, response);
+
+            if (existing != null)
+                response = existing;
+        }
+
+        return response;
+    }
+
+    /**
+     * Get the whole generation in the stored format, rendering it on the first call
+     * @return The gzipped contents, as read by {@link DatabaseStore#read}
+     * @throws IOException Thrown when the contents could not be rendered
+     */
+    public byte[] getReplica() throws IOException {
+        byte[] body = replica.get();
+
+        if (body == null) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            DatabaseStore.write(versions, generation, generatedAt, out);
+            body = out.toByteArray();
+
+            if (!replica.compareAndSet(null, body))
+                body = replica.get();
+        }
+
+        return body;
+    }
+
+    /**
+     * @return The ETag of {@link #getReplica()}. Followers copy the generation number and time, so they send back the same value
+     */
+    public String getReplicaEtag() {
+        return "\"" + generation + "-" + generatedAt + "\"";
+    }
+
+    /**
+     * Render all list endpoints for a new generation
+     * @param versions The contents of the generation
+     * @param generation The generation number
+     * @param previous The snapshot being replaced. Unchanged lists and responses are carried over
+     * @param now The time the data was generated
+     * @return The new snapshot
+     */
+    static DatabaseSnapshot render(AllVersions versions, long generation, @Nullable DatabaseSnapshot previous, long now) {
+        AllVersions old = previous == null ? null : previous.versions;
+
+        // Lists carried over from the previous generation are already frozen, and keep their identity
+        AllVersions frozen = new AllVersions(
+                freeze(versions.getGame(), old == null ? null : old.getGame()),
+                freeze(versions.getLoaders(), old == null ? null : old.getLoaders()),
+                freeze(versions.getMappings(), old == null ? null : old.getMappings()),
+                freeze(versions.getIntermediary(), old == null ? null : old.getIntermediary()),
+                freeze(versions.getInstallers(), old == null ? null : old.getInstallers()),
+                freeze(versions.getApi(), old == null ? null : old.getApi()));
+
+        VersionIndex index = new VersionIndex(frozen);
+
+        return new DatabaseSnapshot(
+                generation,
+                now,
+                frozen,
+                index,
+                CachedResponse.of(frozen, now, previous == null ? null : previous.all),
+                CachedResponse.of(frozen.getGame(), now, previous == null ? null : previous.game),
+                CachedResponse.of(frozen.getLoaders(), now, previous == null ? null : previous.loaders),
+                CachedResponse.of(frozen.getMappings(), now, previous == null ? null : previous.mappings),
+                CachedResponse.of(frozen.getIntermediary(), now, previous == null ? null : previous.intermediary),
+                CachedResponse.of(frozen.getInstallers(), now, previous == null ? null : previous.installers),
+                CachedResponse.of(frozen.getApi(), now, previous == null ? null : previous.api),
+                renderLatest(frozen, index, previous, now)
+        );
+    }
+
+    /**
+     * Pick and render the newest entry of every list, and the newest stable entry by the rules of {@link VersionIndex}
+     */
+    private static Map<String, CachedResponse> renderLatest(AllVersions versions, VersionIndex index, @Nullable DatabaseSnapshot previous, long now) {
+        Map<String, Object> picked = new HashMap<>();
+
+        pickLatest(picked, "game", versions.getGame(), GameVersion::isStable);
+        pickLatest(picked, "loader", versions.getLoaders(), index::isStable);
+        pickLatest(picked, "yarn", versions.getMappings(), index::isStable);
+        pickLatest(picked, "intermediary", versions.getIntermediary(), index::isStable);
+        pickLatest(picked, "installer", versions.getInstallers(), index::isStable);
+        pickLatest(picked, "api", versions.getApi(), index::isStable);
+
+        Map<String, CachedResponse> rendered = new HashMap<>();
+        picked.forEach((key, entry) -> rendered.put(key, CachedResponse.of(entry, now, previous == null ? null : previous.latest.get(key))));
+        return rendered;
+    }
+
+    private static <T> void pickLatest(Map<String, Object> picked, String name, List<T> list, Predicate<T> isStable) {
+        if (!list.isEmpty())
+            picked.put(name, list.get(0));
+
+        for (T entry : list) {
+            if (isStable.test(entry)) {
+                picked.put(name + "/stable", entry);
+                break;
+            }
+        }
+    }
+
+    private static <T> List<T> freeze(List<T> list, @Nullable List<T> previous) {
+        return list == previous ? list : Collections.unmodifiableList(list);
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * This file is part of flint-meta and is licensed under the MIT License
+ */
+package net.flintloader.meta.database;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import lombok.AllArgsConstructor;
+import net.flintloader.meta.models.AllVersions;
+import net.flintloader.meta.utils.StringPool;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * @author HypherionSA
+ * Stores the last database update on disk as gzipped, compact JSON,
+ * so a restarted server can serve data before the first update completes.
+ * Follower nodes receive their snapshots from the leader in the same format
+ */
+public class DatabaseStore {
+
+    // Bump when the stored layout changes, older files are then ignored
+    private static final int FORMAT = 1;
+    private static final Gson GSON = new Gson();
+
+    private final Path file;
+
+    public DatabaseStore(String file) {
+        this.file = Path.of(file);
+    }
+
+    /**
+     * Write the database contents to disk. The file is written next to the target and
+     * then renamed, so a crash never leaves a half written file behind
+     * @param versions The database contents
+     * @param generation The generation number of the contents
+     * @param generatedAt The time the data was generated
+     * @throws IOException Thrown when the file could not be written
+     */
+    public void save(AllVersions versions, long generation, long generatedAt) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                write(versions, generation, generatedAt, out);
+            }
+
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Read the stored database from disk
+     * @return The stored database, or null if there is none, or it's from an older format
+     * @throws IOException Thrown when the file could not be read
+     */
+    @Nullable
+    public StoredDatabase load() throws IOException {
+        if (!Files.isRegularFile(file))
+            return null;
+
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Write the database contents in the stored format. Also used to send snapshots to follower nodes
+     * @param versions The database contents
+     * @param generation The generation number of the contents
+     * @param generatedAt The time the data was generated
+     * @param out Where the gzipped contents are written. Left open
+     * @throws IOException Thrown when the contents could not be written
+     */
+    public static void write(AllVersions versions, long generation, long generatedAt, OutputStream out) throws IOException {
+        GZIPOutputStream gzip = new GZIPOutputStream(out);
+        Writer writer = new OutputStreamWriter(gzip, StandardCharsets.UTF_8);
+        GSON.toJson(new StoredDatabase(FORMAT, generation, generatedAt, versions), writer);
+        writer.flush();
+        gzip.finish();
+    }
+
+    /**
+     * Read database contents in the stored format
+     * @param in The gzipped contents
+     * @return The contents, or null if they are from an older format
+     * @throws IOException Thrown when the contents could not be read
+     */
+    @Nullable
+    public static StoredDatabase read(InputStream in) throws IOException {
+        // Game versions and urls repeat in thousands of entries, so equal strings are only kept once
+        Gson gson = new GsonBuilder().registerTypeAdapter(String.class, new PooledStringAdapter(new StringPool())).create();
+
+        try (Reader reader = new InputStreamReader(new GZIPInputStream(in), StandardCharsets.UTF_8)) {
+            StoredDatabase stored = gson.fromJson(reader, StoredDatabase.class);
+            return stored != null && stored.format == FORMAT && stored.versions != null ? stored : null;
+        } catch (JsonParseException e) {
+            throw new IOException("Invalid stored database", e);
+        }
+    }
+
+    @AllArgsConstructor
+    private static class PooledStringAdapter extends TypeAdapter<String> {
+        private final StringPool pool;
+
+        @Override
+        public void write(JsonWriter out, String value) throws IOException {
+            out.value(value);
+        }
+
+        @Override
+        public String read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            return pool.get(in.nextString());
+        }
+    }
+
+    @AllArgsConstructor
+    public static class StoredDatabase {
+        final int format;
+        // Missing from files written before generations were numbered
+        final long generation;
+        final long generatedAt;
+        final AllVersions versions;
+    }
+}
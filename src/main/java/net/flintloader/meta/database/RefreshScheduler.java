@@ -0,0 +1,174 @@
+/**
+ * This file is part of flint-meta and is licensed under the MIT License
+ */
+package net.flintloader.meta.database;
+
+import net.flintloader.meta.metrics.Metrics;
+import net.flintloader.meta.web.StaticExporter;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static net.flintloader.meta.FlintMeta.LOGGER;
+
+/**
+ * @author HypherionSA
+ * Runs database updates, one at a time. Publish notifications are debounced, and every source requested
+ * while waiting is merged into a single update. A slow poll of every source catches anything that was missed.
+ * On follower nodes every update copies the leader instead
+ */
+public class RefreshScheduler {
+
+    // Publishing a release usually uploads several files, so wait for the burst to end before updating
+    private static final long DEBOUNCE_MILLIS = 5000;
+    // Exports that kept files because launcher meta failed to load are tried again after this long
+    private static final long EXPORT_RETRY_MINUTES = 5;
+
+    private final VersionsDatabase database;
+    // Writes the static files after every update that produced a new generation, when an export directory is configured
+    @Nullable
+    private final StaticExporter exporter;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "database-update"));
+    // Exports run on their own thread, so writing the files never delays the next update or replication check
+    private final ExecutorService exportExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "static-export"));
+    // Set while an export is waiting to start. It exports the newest generation, so more requests can be dropped
+    private final AtomicBoolean exportQueued = new AtomicBoolean();
+
+    // Sources waiting for the next update. Guarded by this
+    private final Set<String> pending = new HashSet<>();
+    private boolean scheduled;
+
+    // Base url of the leader, when this node is a follower
+    @Nullable
+    private volatile String leaderUrl;
+
+    public RefreshScheduler(VersionsDatabase database, @Nullable StaticExporter exporter) {
+        this.database = database;
+        this.exporter = exporter;
+    }
+
+    /**
+     * Start the safety-net poll of every source
+     * @param intervalMinutes The time between polls
+     */
+    public void start(long intervalMinutes) {
+        executor.scheduleWithFixedDelay(() -> {
+            Metrics.REFRESH_TRIGGERS.inc("poll");
+            update(VersionsDatabase.SOURCES);
+        }, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Follow a leader node, copying every new generation it publishes. Publish notifications sent to this node
+     * copy the leader straight away as well
+     * @param leaderUrl The base url of the leader
+     * @param intervalSeconds The time between checks for a new generation
+     */
+    public void follow(String leaderUrl, long intervalSeconds) {
+        this.leaderUrl = leaderUrl;
+        executor.scheduleWithFixedDelay(() -> {
+            Metrics.REFRESH_TRIGGERS.inc("replication");
+            update(VersionsDatabase.SOURCES);
+        }, 0, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Update every source in the background, without waiting
+     */
+    public void refreshNow() {
+        executor.execute(() -> update(VersionsDatabase.SOURCES));
+    }
+
+    /**
+     * Export the current generation in the background, if it wasn't exported yet
+     */
+    public void exportNow() {
+        if (exporter != null && exportQueued.compareAndSet(false, true)) {
+            exportExecutor.execute(this::export);
+        }
+    }
+
+    /**
+     * Request an update of some sources. Requests that arrive before the update starts are merged into it
+     * @param sources The sources to update
+     */
+    public synchronized void request(Set<String> sources) {
+        Metrics.REFRESH_TRIGGERS.inc("webhook");
+        pending.addAll(sources);
+
+        if (!scheduled) {
+            scheduled = true;
+            executor.schedule(this::runPending, DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void runPending() {
+        Set<String> sources;
+
+        synchronized (this) {
+            sources = new HashSet<>(pending);
+            pending.clear();
+            scheduled = false;
+        }
+
+        update(sources);
+    }
+
+    private void update(Set<String> sources) {
+        String leader = leaderUrl;
+        long generation = currentGeneration();
+
+        if (leader != null) {
+            try {
+                database.replicate(leader);
+            } catch (Exception e) {
+                // Expected while the leader restarts, so without the stack trace. The last generation is still served
+                if (database.isReady()) {
+                    LOGGER.warn("Failed to replicate from {}, still serving generation {}: {}", leader, generation, e.toString());
+                } else {
+                    LOGGER.warn("Failed to replicate from {}, no generation to serve yet: {}", leader, e.toString());
+                }
+            }
+        } else {
+            try {
+                database.generateDatabase(sources);
+            } catch (Exception e) {
+                LOGGER.error("Failed to update versions database", e);
+            }
+        }
+
+        if (currentGeneration() != generation) {
+            exportNow();
+        }
+    }
+
+    /**
+     * @return The generation being served, or 0 when there is none yet
+     */
+    private long currentGeneration() {
+        DatabaseSnapshot snapshot = database.getSnapshot();
+        return snapshot == null ? 0 : snapshot.getGeneration();
+    }
+
+    private void export() {
+        exportQueued.set(false);
+        DatabaseSnapshot snapshot = database.getSnapshot();
+
+        if (snapshot == null)
+            return;
+
+        try {
+            if (!exporter.export(snapshot)) {
+                executor.schedule(this::exportNow, EXPORT_RETRY_MINUTES, TimeUnit.MINUTES);
+            }
+        } catch (Exception e) {
+            LOGGER.error("Failed to export the versions endpoints", e);
+        }
+    }
+}
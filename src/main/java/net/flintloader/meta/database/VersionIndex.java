@@ -0,0 +1,188 @@
+/**
+ * This file is part of flint-meta and is licensed under the MIT License
+ */
+package net.flintloader.meta.database;
+
+import net.flintloader.meta.models.*;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * @author HypherionSA
+ * Hash indexes over the version lists, built once per database update so the
+ * parameterized routes don't have to scan the lists on every request
+ */
+public class VersionIndex {
+
+    private final Map<String, LoaderVersion> loaders = new HashMap<>();
+    private final Map<String, IntermediaryVersion> intermediary = new HashMap<>();
+    private final Map<String, IntermediaryVersion> intermediaryIgnoreCase = new HashMap<>();
+    private final Map<String, List<IntermediaryVersion>> intermediaryLists = new HashMap<>();
+    private final Map<String, List<YarnVersion>> mappings = new HashMap<>();
+    private final Map<String, List<ApiVersion>> api = new HashMap<>();
+    private final Map<String, Map<String, List<ApiVersion>>> apiByVersion = new HashMap<>();
+
+    // Newest entries, picked once so the latest endpoints don't scan the lists. Lists are sorted newest first
+    @Nullable
+    private LoaderVersion latestLoader;
+    @Nullable
+    private LoaderVersion latestStableLoader;
+    private final Map<String, ApiVersion> latestStableApi = new HashMap<>();
+    // Decides which game versions are releases
+    private final VersionOrder order;
+
+    VersionIndex(AllVersions versions) {
+        this.order = new VersionOrder(versions.getGame());
+
+        // putIfAbsent keeps the first match, the same result the old stream().findFirst() lookups gave
+        for (LoaderVersion loader : versions.getLoaders()) {
+            this.loaders.putIfAbsent(loader.getVersion(), loader);
+
+            if (latestLoader == null)
+                latestLoader = loader;
+
+            if (latestStableLoader == null && isStable(loader))
+                latestStableLoader = loader;
+        }
+
+        for (IntermediaryVersion version : versions.getIntermediary()) {
+            this.intermediary.putIfAbsent(version.getVersion(), version);
+            this.intermediaryIgnoreCase.putIfAbsent(version.getVersion().toLowerCase(Locale.ROOT), version);
+            this.intermediaryLists.computeIfAbsent(version.getVersion(), k -> new ArrayList<>()).add(version);
+        }
+
+        for (YarnVersion version : versions.getMappings()) {
+            this.mappings.computeIfAbsent(version.getGameVersion(), k -> new ArrayList<>()).add(version);
+        }
+
+        for (ApiVersion version : versions.getApi()) {
+            this.api.computeIfAbsent(version.getMinecraft(), k -> new ArrayList<>()).add(version);
+
+            // Api versions are in the format <minecraft>-<version>, and the minecraft version can contain dashes itself
+            String apiVersion = VersionOrder.apiPart(version.getVersion(), version.getMinecraft());
+            if (!apiVersion.equals(version.getVersion())) {
+                this.apiByVersion.computeIfAbsent(version.getMinecraft(), k -> new HashMap<>())
+                        .computeIfAbsent(apiVersion, k -> new ArrayList<>())
+                        .add(version);
+            }
+
+            if (isStableForGame(version))
+                this.latestStableApi.putIfAbsent(version.getMinecraft(), version);
+        }
+
+        freeze(this.intermediaryLists);
+        freeze(this.mappings);
+        freeze(this.api);
+        this.apiByVersion.values().forEach(VersionIndex::freeze);
+    }
+
+    @Nullable
+    public LoaderVersion getLoader(String version) {
+        return loaders.get(version);
+    }
+
+    /**
+     * @param gameVersion The game version to look up. Matched case-insensitive
+     */
+    @Nullable
+    public IntermediaryVersion getIntermediaryIgnoreCase(String gameVersion) {
+        return intermediaryIgnoreCase.get(gameVersion.toLowerCase(Locale.ROOT));
+    }
+
+    @Nullable
+    public IntermediaryVersion getIntermediary(String gameVersion) {
+        return intermediary.get(gameVersion);
+    }
+
+    public List<IntermediaryVersion> getIntermediaryFor(String gameVersion) {
+        return intermediaryLists.getOrDefault(gameVersion, List.of());
+    }
+
+    public List<YarnVersion> getMappingsFor(String gameVersion) {
+        return mappings.getOrDefault(gameVersion, List.of());
+    }
+
+    public List<ApiVersion> getApiFor(String gameVersion) {
+        return api.getOrDefault(gameVersion, List.of());
+    }
+
+    /**
+     * @param gameVersion The minecraft version
+     * @param apiVersion The api version, without the minecraft version prefix
+     */
+    public List<ApiVersion> getApiFor(String gameVersion, String apiVersion) {
+        return apiByVersion.getOrDefault(gameVersion, Map.of()).getOrDefault(apiVersion, List.of());
+    }
+
+    /**
+     * @param stable Skip pre-release loaders
+     * @return The newest loader, or null when there is none
+     */
+    @Nullable
+    public LoaderVersion getLatestLoader(boolean stable) {
+        return stable ? latestStableLoader : latestLoader;
+    }
+
+    /**
+     * @param gameVersion The game version
+     * @return The newest yarn build for the game version, or null when there is none
+     */
+    @Nullable
+    public YarnVersion getLatestMappings(String gameVersion) {
+        List<YarnVersion> list = getMappingsFor(gameVersion);
+        return list.isEmpty() ? null : list.get(0);
+    }
+
+    /**
+     * @param gameVersion The game version
+     * @param stable Skip pre-release api versions
+     * @return The newest api version for the game version, or null when there is none
+     */
+    @Nullable
+    public ApiVersion getLatestApi(String gameVersion, boolean stable) {
+        if (stable)
+            return latestStableApi.get(gameVersion);
+
+        List<ApiVersion> list = getApiFor(gameVersion);
+        return list.isEmpty() ? null : list.get(0);
+    }
+
+    // Stability rules shared by the latest endpoints and the stable filter of the lists. Releases are game versions of type
+    // release, and versions without a pre-release qualifier. Yarn and intermediary have no versions of their own, so their game version decides
+
+    public boolean isStable(LoaderVersion loader) {
+        return !VersionOrder.isPreRelease(loader.getVersion());
+    }
+
+    public boolean isStable(YarnVersion mappings) {
+        return order.isStableGame(mappings.getGameVersion());
+    }
+
+    public boolean isStable(IntermediaryVersion intermediary) {
+        return order.isStableGame(intermediary.getVersion());
+    }
+
+    public boolean isStable(InstallerVersion installer) {
+        return installer.isStable() && !VersionOrder.isPreRelease(installer.getVersion());
+    }
+
+    /**
+     * @return True when both the game version and the api version itself are releases
+     */
+    public boolean isStable(ApiVersion api) {
+        return order.isStableGame(api.getMinecraft()) && isStableForGame(api);
+    }
+
+    /**
+     * For lists of a single game version, where the game version is the same for every entry
+     * @return True when the api version itself is a release, whatever its game version
+     */
+    public boolean isStableForGame(ApiVersion api) {
+        return !VersionOrder.isPreRelease(VersionOrder.apiPart(api.getVersion(), api.getMinecraft()));
+    }
+
+    private static <T> void freeze(Map<String, List<T>> map) {
+        map.replaceAll((k, v) -> Collections.unmodifiableList(v));
+    }
+}
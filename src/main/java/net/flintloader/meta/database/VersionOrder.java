@@ -0,0 +1,269 @@
+/**
+ * This file is part of flint-meta and is licensed under the MIT License
+ */
+package net.flintloader.meta.database;
+
+import net.flintloader.meta.models.ApiVersion;
+import net.flintloader.meta.models.GameVersion;
+import net.flintloader.meta.models.YarnVersion;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * @author HypherionSA
+ * Sorts the version lists newest first, instead of trusting the order of maven-metadata.xml.
+ * Understands plain loader and installer versions, api versions in the format {@code <minecraft>-<version>}
+ * and yarn versions in the format {@code <minecraft>+build.<build>}. Minecraft versions can't be compared
+ * by their name, so they are ordered by their position in the launcher manifest.
+ * Sort keys are parsed once per entry when a list is sorted, not on every comparison
+ */
+public class VersionOrder {
+
+    // Qualifiers that mark a version as older than the same version without it, oldest first
+    private static final List<String> PRE_RELEASES = List.of("snapshot", "dev", "alpha", "a", "beta", "b", "milestone", "m", "pre", "rc", "cr");
+
+    // Position of every game version in the launcher manifest, 0 is the newest
+    private final Map<String, Integer> gameRanks = new HashMap<>();
+    private final Set<String> stableGames = new HashSet<>();
+
+    /**
+     * @param game The game versions, in launcher manifest order
+     */
+    public VersionOrder(List<GameVersion> game) {
+        for (GameVersion version : game) {
+            gameRanks.putIfAbsent(version.getVersion(), gameRanks.size());
+
+            if (version.isStable())
+                stableGames.add(version.getVersion());
+        }
+    }
+
+    /**
+     * Sort a list newest first. The sort is stable, so entries with the same key keep their order
+     * @param list The list to sort
+     * @param key Builds the sort key of an entry
+     * @return A new sorted list
+     */
+    public static <T> List<T> newestFirst(List<T> list, Function<T, SortKey> key) {
+        List<Map.Entry<SortKey, T>> keyed = new ArrayList<>(list.size());
+
+        for (T entry : list) {
+            keyed.add(new AbstractMap.SimpleImmutableEntry<>(key.apply(entry), entry));
+        }
+
+        keyed.sort(Map.Entry.comparingByKey());
+
+        List<T> sorted = new ArrayList<>(keyed.size());
+        for (Map.Entry<SortKey, T> entry : keyed) {
+            sorted.add(entry.getValue());
+        }
+
+        return sorted;
+    }
+
+    /**
+     * @param version A loader or installer version
+     * @return The sort key of the version
+     */
+    public static SortKey plain(String version) {
+        return new SortKey(0, null, Version.parse(version));
+    }
+
+    /**
+     * @param version A yarn version
+     * @return The sort key of the version: the game version first, then the build number
+     */
+    public SortKey yarn(YarnVersion version) {
+        return game(version.getGameVersion(), Integer.toString(version.getBuild()));
+    }
+
+    /**
+     * @param version An api version
+     * @return The sort key of the version: the game version first, then the api version
+     */
+    public SortKey api(ApiVersion version) {
+        return game(version.getMinecraft(), apiPart(version.getVersion(), version.getMinecraft()));
+    }
+
+    private SortKey game(String gameVersion, String version) {
+        Integer rank = gameRanks.get(gameVersion);
+
+        // Game versions missing from the manifest go last, ordered by their name
+        return rank != null
+                ? new SortKey(rank, null, Version.parse(version))
+                : new SortKey(Integer.MAX_VALUE, Version.parse(gameVersion), Version.parse(version));
+    }
+
+    /**
+     * Find the game version of an api version. Game versions can contain dashes themselves, for example 1.20-pre1-1.0.3,
+     * so the longest known game version in front of a dash is used
+     * @param version The api version
+     * @return The game version. Falls back to everything before the first dash when no known game version matches
+     */
+    public String apiGame(String version) {
+        String match = null;
+
+        for (int dash = version.indexOf('-'); dash >= 0; dash = version.indexOf('-', dash + 1)) {
+            String candidate = version.substring(0, dash);
+
+            if (gameRanks.containsKey(candidate))
+                match = candidate;
+        }
+
+        if (match != null)
+            return match;
+
+        int dash = version.indexOf('-');
+        return dash < 0 ? version : version.substring(0, dash);
+    }
+
+    /**
+     * @param gameVersion A game version
+     * @return True when the game version is a release
+     */
+    public boolean isStableGame(String gameVersion) {
+        return stableGames.contains(gameVersion);
+    }
+
+    /**
+     * @param version An api version
+     * @param gameVersion The game version of the api version
+     * @return The api version without the game version prefix
+     */
+    public static String apiPart(String version, String gameVersion) {
+        return version.startsWith(gameVersion + "-") ? version.substring(gameVersion.length() + 1) : version;
+    }
+
+    /**
+     * @param version A version
+     * @return True when the version has a pre-release qualifier, like beta or rc
+     */
+    public static boolean isPreRelease(String version) {
+        for (Object token : Version.parse(version).tokens) {
+            if (token instanceof String text && PRE_RELEASES.contains(text))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * A parsed sort key. Keys compare newest first
+     */
+    public static class SortKey implements Comparable<SortKey> {
+        private final int gameRank;
+        @Nullable
+        private final Version game;
+        private final Version version;
+
+        private SortKey(int gameRank, @Nullable Version game, Version version) {
+            this.gameRank = gameRank;
+            this.game = game;
+            this.version = version;
+        }
+
+        @Override
+        public int compareTo(@NotNull SortKey other) {
+            if (gameRank != other.gameRank)
+                return Integer.compare(gameRank, other.gameRank);
+
+            if (game != null && other.game != null) {
+                int compared = other.game.compareTo(game);
+
+                if (compared != 0)
+                    return compared;
+            }
+
+            return other.version.compareTo(version);
+        }
+    }
+
+    /**
+     * A version split into numbers and words, for example 1.0.3-beta.2 becomes 1, 0, 3, beta, 2.
+     * Numbers compare numerically, pre-release words are older than no word and other words are newer
+     */
+    static class Version implements Comparable<Version> {
+        private final Object[] tokens;
+
+        private Version(Object[] tokens) {
+            this.tokens = tokens;
+        }
+
+        static Version parse(String version) {
+            List<Object> tokens = new ArrayList<>();
+            int i = 0;
+
+            while (i < version.length()) {
+                if (isSeparator(version.charAt(i))) {
+                    i++;
+                    continue;
+                }
+
+                // A token runs until a separator, or until it switches between digits and letters
+                int start = i;
+                boolean digits = Character.isDigit(version.charAt(i));
+
+                while (i < version.length() && !isSeparator(version.charAt(i)) && Character.isDigit(version.charAt(i)) == digits) {
+                    i++;
+                }
+
+                String token = version.substring(start, i);
+                tokens.add(digits && token.length() < 19 ? (Object) Long.parseLong(token) : token.toLowerCase(Locale.ROOT));
+            }
+
+            return new Version(tokens.toArray());
+        }
+
+        private static boolean isSeparator(char c) {
+            return c == '.' || c == '-' || c == '+' || c == '_';
+        }
+
+        @Override
+        public int compareTo(@NotNull Version other) {
+            int length = Math.max(tokens.length, other.tokens.length);
+
+            for (int i = 0; i < length; i++) {
+                Object mine = i < tokens.length ? tokens[i] : null;
+                Object theirs = i < other.tokens.length ? other.tokens[i] : null;
+                int compared = compareTokens(mine, theirs);
+
+                if (compared != 0)
+                    return compared;
+            }
+
+            return 0;
+        }
+
+        private static int compareTokens(@Nullable Object a, @Nullable Object b) {
+            if (a == null)
+                return isPreReleaseToken(b) ? 1 : -1;
+
+            if (b == null)
+                return isPreReleaseToken(a) ? -1 : 1;
+
+            if (a instanceof Long x && b instanceof Long y)
+                return Long.compare(x, y);
+
+            // 1.0.1 is newer than 1.0-beta, and 1.0.1 is newer than 1.0.final
+            if (a instanceof Long)
+                return 1;
+
+            if (b instanceof Long)
+                return -1;
+
+            int rankA = PRE_RELEASES.indexOf(a);
+            int rankB = PRE_RELEASES.indexOf(b);
+            rankA = rankA < 0 ? PRE_RELEASES.size() : rankA;
+            rankB = rankB < 0 ? PRE_RELEASES.size() : rankB;
+
+            return rankA != rankB ? Integer.compare(rankA, rankB) : ((String) a).compareTo((String) b);
+        }
+
+        private static boolean isPreReleaseToken(Object token) {
+            return token instanceof String && PRE_RELEASES.contains(token);
+        }
+    }
+}
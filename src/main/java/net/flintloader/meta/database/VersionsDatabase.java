@@ -6,17 +6,26 @@
 package net.flintloader.meta.database;
 
 import com.google.gson.Gson;
+import lombok.AllArgsConstructor;
 import lombok.Getter;
 import net.flintloader.meta.Constants;
 import net.flintloader.meta.maven.MavenRepository;
 import net.flintloader.meta.maven.MinecraftMaven;
+import net.flintloader.meta.metrics.Metrics;
 import net.flintloader.meta.models.*;
+import net.flintloader.meta.utils.StringPool;
+import net.flintloader.meta.utils.UpstreamClient;
+import net.flintloader.meta.web.routes.ReplicationRoute;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
 
 import static net.flintloader.meta.FlintMeta.LOGGER;
 
@@ -30,140 +39,535 @@ public class VersionsDatabase {
     private static final MavenRepository flintMaven = new MavenRepository(Constants.FLINT_MAVEN);
     // Flint Mirror repository for mirrored fabric libraries
     private static final MavenRepository flintMirror = new MavenRepository(Constants.FLINT_MIRROR);
+    // Copy of the last update on disk, for fast restarts
+    private static final DatabaseStore store = new DatabaseStore(Constants.DATABASE_FILE);
     private static final Gson GSON = new Gson();
-
-    @Getter
-    private List<GameVersion> game;
-    @Getter
-    private List<LoaderVersion> loaders;
-    @Getter
-    private List<YarnVersion> mappings;
+    // Upstream sources are independent, so they are all loaded at the same time
+    private static final ExecutorService REFRESH_EXECUTOR = Executors.newFixedThreadPool(6, runnable -> {
+        Thread thread = new Thread(runnable, "database-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // How long each upstream source may take to load, counted from when it starts loading
+    private static final long SOURCE_TIMEOUT = 60;
+
+    // Names of the upstream sources, used for targeted refreshes and metrics
+    public static final String LOADERS = "loaders";
+    public static final String YARN = "yarn";
+    public static final String INTERMEDIARY = "intermediary";
+    public static final String GAME = "game";
+    public static final String INSTALLERS = "installers";
+    public static final String API = "api";
+    public static final Set<String> SOURCES = Set.of(LOADERS, YARN, INTERMEDIARY, GAME, INSTALLERS, API);
+    // Followers load everything from the leader node instead
+    public static final String LEADER = "leader";
+
+    // How many past generations are kept for the changes feed
+    private static final int HISTORY_SIZE = 16;
+
+    // The current generation. Every update publishes a new immutable snapshot, with all lists swapped at once.
+    // Null until the first generation is loaded, which only happens on followers that can't reach their leader
     @Getter
-    private List<IntermediaryVersion> intermediary;
-    @Getter
-    private List<InstallerVersion> installers;
-    @Getter
-    private List<ApiVersion> api;
+    private volatile DatabaseSnapshot snapshot;
+
+    // Contents of recent generations, by generation number. Unchanged lists are shared between generations
+    private final Map<Long, AllVersions> history = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, AllVersions> eldest) {
+            return size() > HISTORY_SIZE;
+        }
+    };
 
     /**
-     * Get the index of a minecraft version from the launcher manifest
-     * @param versions List of Minecraft Versions
-     * @param version The version to check for
-     * @return The index of the version, or 0 if it's not found
+     * Build the database cache from every upstream source
+     * @throws IOException Thrown when an error occurs, or a source did not load in time
      */
-    private static int getIndex(List<MinecraftMaven.Version> versions, String version) {
-        for (int i = 0; i < versions.size(); i++) {
-            if (versions.get(i).getId().equals(version)) {
-                return i;
+    public void generateDatabase() throws IOException {
+        generateDatabase(SOURCES);
+    }
+
+    /**
+     * Build the database cache. Called by the safety-net poll and when a publish is reported.
+     * All upstream sources are loaded in parallel, and the lists are only replaced once every source has loaded.
+     * A source that fails or runs late keeps its list of the previous generation
+     * @param sources The sources to poll. The others reuse what they loaded last time
+     * @throws IOException Thrown when an error occurs, or a source did not load in time while there is no previous generation
+     */
+    public void generateDatabase(Set<String> sources) throws IOException {
+        long start = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+
+        SourceLoad<MavenRepository.ArtifactMetadata> loadersTask = new SourceLoad<>(LOADERS, maven(sources, LOADERS, flintMaven, Constants.FLINT_GROUP, Constants.LOADER_ARTIFACT));
+        SourceLoad<MavenRepository.ArtifactMetadata> mappingsTask = new SourceLoad<>(YARN, maven(sources, YARN, flintMirror, Constants.FABRIC_GROUP, Constants.YARN_ARTIFACT));
+        SourceLoad<MavenRepository.ArtifactMetadata> intermediaryTask = new SourceLoad<>(INTERMEDIARY, maven(sources, INTERMEDIARY, flintMirror, Constants.FABRIC_GROUP, Constants.INTERMEDIARY_ARTIFACT));
+        SourceLoad<MinecraftMaven> manifestTask = new SourceLoad<>(GAME, sources.contains(GAME)
+                ? timed(GAME, () -> MinecraftMaven.getManifest(GSON))
+                : () -> MinecraftMaven.getKnownManifest(GSON));
+        SourceLoad<MavenRepository.ArtifactMetadata> installersTask = new SourceLoad<>(INSTALLERS, maven(sources, INSTALLERS, flintMaven, Constants.FLINT_GROUP, Constants.INSTALLER_ARTIFACT));
+        SourceLoad<MavenRepository.ArtifactMetadata> apiTask = new SourceLoad<>(API, maven(sources, API, flintMaven, Constants.FLINT_GROUP, Constants.FLINT_API));
+        List<SourceLoad<?>> tasks = List.of(loadersTask, mappingsTask, intermediaryTask, manifestTask, installersTask, apiTask);
+        AllVersions versions;
+
+        try {
+            // Lists of unchanged and failed sources are carried over, so they are shared with the previous generation
+            AllVersions previous = snapshot == null ? null : snapshot.getVersions();
+            boolean reuse = previous != null;
+
+            MavenRepository.ArtifactMetadata loadersMetadata = loadersTask.await(reuse);
+            MavenRepository.ArtifactMetadata mappingsMetadata = mappingsTask.await(reuse);
+            MavenRepository.ArtifactMetadata intermediaryMetadata = intermediaryTask.await(reuse);
+            MinecraftMaven manifest = manifestTask.await(reuse);
+            MavenRepository.ArtifactMetadata installersMetadata = installersTask.await(reuse);
+            MavenRepository.ArtifactMetadata apiMetadata = apiTask.await(reuse);
+
+            boolean changed = isChanged(loadersMetadata) || isChanged(mappingsMetadata) || isChanged(intermediaryMetadata)
+                    || (manifest != null && manifest.isChanged()) || isChanged(installersMetadata) || isChanged(apiMetadata);
+
+            if (!changed && reuse) {
+                LOGGER.info("DB update skipped, no upstream changes ({} ms)", (System.currentTimeMillis() - start));
+                Metrics.UPDATE_DURATION.observeSince(startNanos);
+                return;
             }
+
+            GameVersions gameVersions = reuse && !isChanged(intermediaryMetadata) && (manifest == null || !manifest.isChanged())
+                    ? new GameVersions(previous.getGame(), previous.getIntermediary())
+                    : manifest == null
+                    // The manifest failed, so new intermediary versions are placed in the order of the previous game list.
+                    // Loading the manifest again here would wait for it outside its timeout
+                    ? orderGameVersions(loadIntermediary(intermediaryMetadata), previous.getGame())
+                    : loadGameVersions(intermediaryMetadata == null ? previous.getIntermediary() : loadIntermediary(intermediaryMetadata), manifest.getVersions());
+            // Yarn and api versions are ordered by their game version, so the game versions are loaded first
+            VersionOrder order = new VersionOrder(gameVersions.game);
+            // Game versions repeat in every yarn and api entry, so they all share the strings of the game list
+            StringPool gameStrings = new StringPool();
+            gameVersions.game.forEach(game -> gameStrings.get(game.getVersion()));
+
+            // Reloaded sources usually differ by a few entries at most, so the unchanged entries are shared with the previous generation
+            versions = new AllVersions(
+                    share(gameVersions.game, reuse ? previous.getGame() : null),
+                    reuse && !isChanged(loadersMetadata) ? previous.getLoaders() : share(loadLoaders(loadersMetadata), reuse ? previous.getLoaders() : null),
+                    reuse && !isChanged(mappingsMetadata) ? previous.getMappings() : share(loadMappings(mappingsMetadata, order, gameStrings), reuse ? previous.getMappings() : null),
+                    share(gameVersions.intermediary, reuse ? previous.getIntermediary() : null),
+                    reuse && !isChanged(installersMetadata) ? previous.getInstallers() : share(loadInstallers(installersMetadata), reuse ? previous.getInstallers() : null),
+                    reuse && !isChanged(apiMetadata) ? previous.getApi() : share(loadApi(apiMetadata, order, gameStrings), reuse ? previous.getApi() : null));
+
+            // For example the first poll after a restart, which reloads every source but finds what was stored on disk
+            if (reuse && isSameGeneration(versions, previous)) {
+                LOGGER.info("DB update skipped, upstream content unchanged ({} ms)", (System.currentTimeMillis() - start));
+                Metrics.UPDATE_DURATION.observeSince(startNanos);
+                return;
+            }
+        } catch (IOException | RuntimeException e) {
+            // What was polled is not published, so the next update can't skip sources that look unchanged since this one
+            flintMaven.forget();
+            flintMirror.forget();
+            MinecraftMaven.forget();
+            throw e;
+        } finally {
+            // Stop whatever is still running if one of the sources failed
+            tasks.forEach(task -> task.task.cancel(true));
+        }
+
+        publish(versions, snapshot == null ? 1 : snapshot.getGeneration() + 1, System.currentTimeMillis());
+
+        try {
+            store.save(versions, snapshot.getGeneration(), snapshot.getGeneratedAt());
+        } catch (IOException e) {
+            LOGGER.error("Failed to save versions database to {}", Constants.DATABASE_FILE, e);
+        }
+
+        Metrics.UPDATE_DURATION.observeSince(startNanos);
+        LOGGER.info("DB update took {} ms, now at generation {}", (System.currentTimeMillis() - start), snapshot.getGeneration());
+    }
+
+    /**
+     * Reuse the entries of the previous generation that did not change, so generations don't each keep their own copy
+     * @param fresh The list that was just loaded
+     * @param previous The list of the previous generation, or null when there is none
+     * @return The previous list itself when nothing changed, or the fresh list with unchanged entries replaced by the previous ones
+     */
+    static <T> List<T> share(List<T> fresh, @Nullable List<T> previous) {
+        if (previous == null)
+            return fresh;
+
+        if (fresh.equals(previous))
+            return previous;
+
+        Map<T, T> existing = new HashMap<>(previous.size() * 2);
+        for (T entry : previous) {
+            existing.putIfAbsent(entry, entry);
         }
 
-        return 0;
+        List<T> shared = new ArrayList<>(fresh.size());
+        for (T entry : fresh) {
+            shared.add(existing.getOrDefault(entry, entry));
+        }
+
+        return shared;
+    }
+
+    /**
+     * @param metadata Loaded metadata, or null when the source failed
+     * @return True when the source loaded and changed since the last poll
+     */
+    private static boolean isChanged(@Nullable MavenRepository.ArtifactMetadata metadata) {
+        return metadata != null && metadata.isChanged();
+    }
+
+    private static boolean isSameGeneration(AllVersions versions, AllVersions previous) {
+        return versions.getGame() == previous.getGame()
+                && versions.getLoaders() == previous.getLoaders()
+                && versions.getMappings() == previous.getMappings()
+                && versions.getIntermediary() == previous.getIntermediary()
+                && versions.getInstallers() == previous.getInstallers()
+                && versions.getApi() == previous.getApi();
     }
 
     /**
-     * Extract a specific minecraft version from a list of versions
-     * @param versions List of Minecraft Versions
-     * @param version The version to check for
-     * @return The version or null if not found
+     * Render and swap in a new generation
+     * @param versions The contents of the generation
+     * @param generation The generation number
+     * @param generatedAt The time the data was generated
+     */
+    private synchronized void publish(AllVersions versions, long generation, long generatedAt) {
+        // Numbers only go back when a follower copies a leader that lost its data. Older numbers mean different contents then
+        if (snapshot != null && generation <= snapshot.getGeneration())
+            history.clear();
+
+        snapshot = DatabaseSnapshot.render(versions, generation, snapshot, generatedAt);
+        history.put(generation, snapshot.getVersions());
+    }
+
+    /**
+     * @return True once a generation was loaded, generated or copied from the leader
+     */
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    /**
+     * Get the contents of a recent generation
+     * @param generation The generation number
+     * @return The contents, or null when the generation is unknown or too old
      */
     @Nullable
-    private static MinecraftMaven.Version getMinecraftVersion(List<MinecraftMaven.Version> versions, String version) {
-        if (versions.stream().anyMatch(v -> v.getId().equals(version))) {
-            return versions.stream().filter(v -> v.getId().equals(version)).findFirst().get();
+    public synchronized AllVersions getGeneration(long generation) {
+        return history.get(generation);
+    }
+
+    /**
+     * Copy the current generation of the leader node, instead of polling the upstream sources.
+     * The request is conditional, so it costs almost nothing while the leader has no new generation
+     * @param leaderUrl The base url of the leader
+     * @throws IOException Thrown when the leader could not be reached or sent an invalid snapshot. The current generation is kept
+     */
+    public void replicate(String leaderUrl) throws IOException {
+        long start = System.nanoTime();
+        DatabaseSnapshot current = snapshot;
+        String url = (leaderUrl.endsWith("/") ? leaderUrl.substring(0, leaderUrl.length() - 1) : leaderUrl) + ReplicationRoute.SNAPSHOT_PATH;
+        DatabaseStore.StoredDatabase stored;
+
+        try {
+            UpstreamClient.Response response = UpstreamClient.get(url, current == null ? null : current.getReplicaEtag(), null);
+
+            if (response.getStatus() == 304)
+                return;
+
+            if (!response.isSuccess())
+                throw new IOException("Leader responded with status " + response.getStatus());
+
+            stored = DatabaseStore.read(response.stream());
+
+            if (stored == null)
+                throw new IOException("Leader sent a snapshot in an unsupported format");
+        } catch (IOException e) {
+            Metrics.REFRESH_FAILURES.inc(LEADER);
+            throw e;
+        } finally {
+            Metrics.REFRESH_DURATION.observeSince(start, LEADER);
         }
-        return null;
+
+        if (current != null && stored.generation == current.getGeneration() && stored.generatedAt == current.getGeneratedAt())
+            return;
+
+        AllVersions previous = current == null ? null : current.getVersions();
+        AllVersions versions = previous == null ? stored.versions : new AllVersions(
+                share(stored.versions.getGame(), previous.getGame()),
+                share(stored.versions.getLoaders(), previous.getLoaders()),
+                share(stored.versions.getMappings(), previous.getMappings()),
+                share(stored.versions.getIntermediary(), previous.getIntermediary()),
+                share(stored.versions.getInstallers(), previous.getInstallers()),
+                share(stored.versions.getApi(), previous.getApi()));
+
+        // The leader's numbers are kept, so clients can move between nodes with the same changes cursor
+        publish(versions, stored.generation, stored.generatedAt);
+
+        try {
+            store.save(versions, stored.generation, stored.generatedAt);
+        } catch (IOException e) {
+            LOGGER.error("Failed to save versions database to {}", Constants.DATABASE_FILE, e);
+        }
+
+        Metrics.UPDATE_DURATION.observeSince(start);
+        LOGGER.info("Replicated generation {} from {}", stored.generation, leaderUrl);
     }
 
     /**
-     * Build the database cache. Called every 2 minutes
-     * @throws IOException Thrown when an error occurs
+     * Load the last stored update from disk, so requests can be served before the first update completes
+     * @return True if a stored database was found and loaded
      */
-    public void generateDatabase() throws IOException {
-        long start = System.currentTimeMillis();
-        loaders = loadLoaders();
-        mappings = loadMappings();
-        intermediary = loadIntermediary();
-        game = loadGameVersions();
-        installers = loadInstallers();
-        api = loadApi();
+    public boolean loadFromDisk() {
+        try {
+            DatabaseStore.StoredDatabase stored = store.load();
+
+            if (stored == null)
+                return false;
 
-        LOGGER.info("DB update took {} ms", (System.currentTimeMillis() - start));
+            // Files written before generations were numbered have generation 0
+            publish(sortStored(stored.versions), Math.max(1, stored.generation), stored.generatedAt);
+
+            LOGGER.info("Loaded generation {} of the versions database from {}", snapshot.getGeneration(), Constants.DATABASE_FILE);
+            return true;
+        } catch (Exception e) {
+            LOGGER.error("Failed to load stored versions database from {}", Constants.DATABASE_FILE, e);
+            return false;
+        }
+    }
+
+    /**
+     * Sort a stored database, since files written before the lists were sorted are in maven-metadata.xml order.
+     * Unchanged sources keep their lists across updates, so they would otherwise stay in that order
+     * @param stored The stored lists
+     * @return The lists, sorted newest first
+     */
+    private static AllVersions sortStored(AllVersions stored) {
+        VersionOrder order = new VersionOrder(stored.getGame());
+        List<ApiVersion> api = new ArrayList<>(stored.getApi().size());
+
+        // The game version of api versions for pre-releases used to be cut off at the first dash
+        for (ApiVersion version : stored.getApi()) {
+            api.add(new ApiVersion(version.getVersion(), order.apiGame(version.getVersion()), version.getMaven(), version.getUrl()));
+        }
+
+        return new AllVersions(
+                stored.getGame(),
+                VersionOrder.newestFirst(stored.getLoaders(), loader -> VersionOrder.plain(loader.getVersion())),
+                VersionOrder.newestFirst(stored.getMappings(), order::yarn),
+                stored.getIntermediary(),
+                VersionOrder.newestFirst(stored.getInstallers(), installer -> VersionOrder.plain(installer.getVersion())),
+                VersionOrder.newestFirst(api, order::api));
+    }
+
+    /**
+     * Build the task that loads a maven source
+     * @param sources The sources being refreshed
+     * @param source The name of the source
+     * @return A task polling the maven when the source is being refreshed, or returning the last known metadata otherwise
+     */
+    private static Callable<MavenRepository.ArtifactMetadata> maven(Set<String> sources, String source, MavenRepository repository, String group, String name) {
+        if (!sources.contains(source))
+            return () -> repository.getKnownMetadata(group, name);
+
+        return timed(source, () -> repository.getMetadata(group, name));
+    }
+
+    /**
+     * Get the source an artifact is loaded from
+     * @param artifact An artifact name, for example punch, or a source name
+     * @return The name of the source, or null when the artifact is not part of the database
+     */
+    @Nullable
+    public static String sourceOf(String artifact) {
+        if (SOURCES.contains(artifact))
+            return artifact;
+
+        return switch (artifact) {
+            case Constants.LOADER_ARTIFACT -> LOADERS;
+            case Constants.YARN_ARTIFACT -> YARN;
+            case Constants.INTERMEDIARY_ARTIFACT -> INTERMEDIARY;
+            case Constants.INSTALLER_ARTIFACT -> INSTALLERS;
+            case Constants.FLINT_API -> API;
+            default -> null;
+        };
+    }
+
+    /**
+     * Wrap the loading of an upstream source, recording how long it took and whether it failed
+     * @param source The name of the source, used as the source label of the metrics
+     * @param loader Loads the source
+     * @return The wrapped task
+     */
+    private static <T> Callable<T> timed(String source, Callable<T> loader) {
+        return () -> {
+            long start = System.nanoTime();
+
+            try {
+                return loader.call();
+            } catch (Exception e) {
+                Metrics.REFRESH_FAILURES.inc(source);
+                throw e;
+            } finally {
+                Metrics.REFRESH_DURATION.observeSince(start, source);
+            }
+        };
+    }
+
+    /**
+     * An upstream source loading on the refresh executor. Its timeout counts from when it starts loading,
+     * so a source waiting for a free thread doesn't lose time to the sources ahead of it
+     */
+    private static class SourceLoad<T> {
+        private final String source;
+        private final Future<T> task;
+        private final long submittedAt = System.currentTimeMillis();
+        // 0 while the source waits for a thread
+        private volatile long startedAt;
+
+        SourceLoad(String source, Callable<T> loader) {
+            this.source = source;
+            this.task = REFRESH_EXECUTOR.submit(() -> {
+                startedAt = System.currentTimeMillis();
+                return loader.call();
+            });
+        }
+
+        /**
+         * Wait for the source to finish loading
+         * @param fallback If a failed source should return null, so its previous list is kept
+         * @return The loaded result, or null when the source failed and fallback is set
+         * @throws IOException Thrown when the source failed or did not load in time, and fallback is not set
+         */
+        @Nullable
+        T await(boolean fallback) throws IOException {
+            try {
+                return get();
+            } catch (IOException e) {
+                if (!fallback)
+                    throw e;
+
+                task.cancel(true);
+                LOGGER.warn("{}, keeping its previous data", e.getMessage(), e.getCause());
+                return null;
+            }
+        }
+
+        private T get() throws IOException {
+            try {
+                while (true) {
+                    long started = startedAt;
+                    long deadline = (started == 0 ? submittedAt : started) + TimeUnit.SECONDS.toMillis(SOURCE_TIMEOUT);
+
+                    try {
+                        return task.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                    } catch (TimeoutException e) {
+                        // Started while waiting, so it gets its full time from now on
+                        if (startedAt == started)
+                            throw new IOException("Timed out loading " + source);
+                    }
+                }
+            } catch (ExecutionException e) {
+                throw new IOException("Failed to load " + source, e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while loading " + source, e);
+            }
+        }
     }
 
     /**
      * Load supported minecraft versions based on the available intermediary fabric mappings
-     * @return A list of supported game versions
+     * @param intermediary The intermediary mappings. Not modified
+     * @param minecraftVersions The versions from the launcher manifest
+     * @return The supported game versions, and the intermediary mappings sorted in launcher manifest order,
+     * without versions unknown to the manifest
+     */
+    static GameVersions loadGameVersions(List<IntermediaryVersion> intermediary, List<MinecraftMaven.Version> minecraftVersions) {
+        List<GameVersion> known = new ArrayList<>(minecraftVersions.size());
+        minecraftVersions.forEach(v -> known.add(new GameVersion(v.getId(), v.getType().equals("release"))));
+        return orderGameVersions(intermediary, known);
+    }
+
+    /**
+     * Load supported minecraft versions from a list of known game versions
+     * @param intermediary The intermediary mappings. Not modified
+     * @param known The known game versions, newest first. The manifest, or the game list of the previous generation
+     * @return The supported game versions, and the intermediary mappings sorted in the order of the known versions,
+     * without versions that are not known
      */
-    private List<GameVersion> loadGameVersions() {
+    static GameVersions orderGameVersions(List<IntermediaryVersion> intermediary, List<GameVersion> known) {
         List<GameVersion> versions = new ArrayList<>();
-        List<MinecraftMaven.Version> minecraftVersions = MinecraftMaven.getAll(GSON);
+        List<IntermediaryVersion> sorted = new ArrayList<>(intermediary.size());
 
         // This section of code comes from https://github.com/FabricMC/fabric-meta
         // and is licensed under Apache-2.0
-        intermediary = new ArrayList<>(intermediary);
-        intermediary.sort(Comparator.comparingInt(o -> getIndex(minecraftVersions, o.getVersion())));
-        intermediary.forEach(version -> version.setStable(true));
-
-        intermediary.removeIf(o -> minecraftVersions.stream().noneMatch(version -> version.getId().equals(o.getVersion())));
-
-        if (intermediary.isEmpty()) {
-            minecraftVersions.forEach(v -> versions.add(new GameVersion(v.getId(), v.getType().equalsIgnoreCase("release"))));
-        } else {
-            intermediary.forEach(i -> {
-                if (versions.stream().noneMatch(vv -> vv.getVersion().equals(i.getVersion()))) {
-                    MinecraftMaven.Version version = getMinecraftVersion(minecraftVersions, i.getVersion());
-                    if (version == null) return;
+        // Walking the manifest once gives the same order the fabric code got from sorting by manifest index,
+        // without looking up the index on every comparison
+        Map<String, List<IntermediaryVersion>> byVersion = new HashMap<>();
+        intermediary.forEach(i -> byVersion.computeIfAbsent(i.getVersion(), k -> new ArrayList<>(1)).add(i));
+
+        for (GameVersion version : known) {
+            // Removing the entry makes sure every version is only emitted once, for its first manifest entry
+            List<IntermediaryVersion> matches = byVersion.remove(version.getVersion());
+            if (matches == null) continue;
+
+            // Intermediary versions are created stable, so they can be shared between generations as is
+            sorted.addAll(matches);
+            versions.add(version);
+        }
 
-                    versions.add(new GameVersion(version.getId(), version.getType().equals("release")));
-                }
-            });
+        if (sorted.isEmpty()) {
+            versions.addAll(known);
         }
         // End of Apache-2.0 code
 
-        return versions;
+        return new GameVersions(versions, sorted);
+    }
+
+    @AllArgsConstructor
+    static class GameVersions {
+        final List<GameVersion> game;
+        final List<IntermediaryVersion> intermediary;
     }
 
     /**
      * Get a list of available Flint Loader version from the maven
-     * @return A list of loaders
-     * @throws IOException Thrown when an error occurs
+     * @param metadata The loader maven metadata
+     * @return A list of loaders, newest first
      */
-    private List<LoaderVersion> loadLoaders() throws IOException {
+    private List<LoaderVersion> loadLoaders(MavenRepository.ArtifactMetadata metadata) {
         List<LoaderVersion> versions = new ArrayList<>();
-        MavenRepository.ArtifactMetadata metadata = flintMaven.getMetadata(Constants.FLINT_GROUP, Constants.LOADER_ARTIFACT);
 
         for (MavenRepository.ArtifactMetadata.Artifact artifact : metadata) {
             versions.add(new LoaderVersion(artifact.getVersion(), artifact.mavenId(), artifact.url()));
         }
 
-        return versions;
+        return VersionOrder.newestFirst(versions, loader -> VersionOrder.plain(loader.getVersion()));
     }
 
     /**
      * Get a list of available Yarn Mappings from the Mirror maven
-     * @return A list of Yarn Mappings
-     * @throws IOException Thrown when an error occurs
+     * @param metadata The yarn maven metadata
+     * @param order The order of the game versions
+     * @param gameStrings Pool of game version strings
+     * @return A list of Yarn Mappings, newest game version first, then newest build first
      */
-    private List<YarnVersion> loadMappings() throws IOException {
+    private List<YarnVersion> loadMappings(MavenRepository.ArtifactMetadata metadata, VersionOrder order, StringPool gameStrings) {
         List<YarnVersion> versions = new ArrayList<>();
-        MavenRepository.ArtifactMetadata metadata = flintMirror.getMetadata(Constants.FABRIC_GROUP, Constants.YARN_ARTIFACT);
 
         for (MavenRepository.ArtifactMetadata.Artifact artifact : metadata) {
-            versions.add(YarnVersion.of(artifact));
+            versions.add(YarnVersion.of(artifact, gameStrings));
         }
 
-        return versions;
+        return VersionOrder.newestFirst(versions, order::yarn);
     }
 
     /**
      * Get a list of intermediary mappings from the Mirror Maven
+     * @param metadata The intermediary maven metadata
      * @return A list of Intermediary mappings
-     * @throws IOException Thrown when an error occurs
      */
-    private List<IntermediaryVersion> loadIntermediary() throws IOException {
+    private List<IntermediaryVersion> loadIntermediary(MavenRepository.ArtifactMetadata metadata) {
         List<IntermediaryVersion> versions = new ArrayList<>();
-        MavenRepository.ArtifactMetadata metadata = flintMirror.getMetadata(Constants.FABRIC_GROUP, Constants.INTERMEDIARY_ARTIFACT);
 
         for (MavenRepository.ArtifactMetadata.Artifact artifact : metadata) {
             versions.add(new IntermediaryVersion(artifact.mavenId(), artifact.getVersion(), true));
@@ -174,33 +578,34 @@ public class VersionsDatabase {
 
     /**
      * Get a list of installer versions from the flint Maven
-     * @return A list of installer versions
-     * @throws IOException Thrown when an error occurs
+     * @param metadata The installer maven metadata
+     * @return A list of installer versions, newest first
      */
-    private List<InstallerVersion> loadInstallers() throws IOException {
+    private List<InstallerVersion> loadInstallers(MavenRepository.ArtifactMetadata metadata) {
         List<InstallerVersion> versions = new ArrayList<>();
-        MavenRepository.ArtifactMetadata metadata = flintMaven.getMetadata(Constants.FLINT_GROUP, Constants.INSTALLER_ARTIFACT);
 
         for (MavenRepository.ArtifactMetadata.Artifact artifact : metadata) {
             versions.add(new InstallerVersion(artifact.url(), artifact.mavenId(), artifact.getVersion(), true));
         }
 
-        return versions;
+        return VersionOrder.newestFirst(versions, installer -> VersionOrder.plain(installer.getVersion()));
     }
 
     /**
      * Get a list of api versions from the flint Maven
-     * @return A list of api versions
-     * @throws IOException Thrown when an error occurs
+     * @param metadata The api maven metadata
+     * @param order The order of the game versions
+     * @param gameStrings Pool of game version strings
+     * @return A list of api versions, newest game version first, then newest api version first
      */
-    private List<ApiVersion> loadApi() throws IOException {
+    private List<ApiVersion> loadApi(MavenRepository.ArtifactMetadata metadata, VersionOrder order, StringPool gameStrings) {
         List<ApiVersion> versions = new ArrayList<>();
-        MavenRepository.ArtifactMetadata metadata = flintMaven.getMetadata(Constants.FLINT_GROUP, Constants.FLINT_API);
 
         for (MavenRepository.ArtifactMetadata.Artifact artifact : metadata) {
-            versions.add(new ApiVersion(artifact.getVersion(), artifact.getVersion().split("-")[0], artifact.mavenId(), artifact.url()));
+            String version = artifact.getVersion();
+            versions.add(new ApiVersion(version, gameStrings.get(order.apiGame(version)), artifact.mavenId(), artifact.url()));
         }
 
-        return versions;
+        return VersionOrder.newestFirst(versions, order::api);
     }
 }
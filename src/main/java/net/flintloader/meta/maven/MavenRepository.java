@@ -8,60 +8,141 @@ package net.flintloader.meta.maven;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import net.flintloader.meta.utils.UpstreamClient;
 import org.jetbrains.annotations.NotNull;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.jetbrains.annotations.Nullable;
 
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import java.io.IOException;
-import java.net.URL;
+import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 @RequiredArgsConstructor
 public class MavenRepository {
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(MavenRepository.class);
-
     final String url;
 
-    private static Collection<String> readVersionsFromPom(String path) throws IOException {
+    // Last known state of each maven-metadata.xml, used for conditional requests
+    private final Map<String, PolledMetadata> polled = new ConcurrentHashMap<>();
+
+    /**
+     * Load a maven-metadata.xml file. The request is conditional on the ETag and Last-Modified
+     * of the previous response, and the file is only parsed when it actually changed
+     * @param path The url of the metadata file
+     * @param group The group of the artifact
+     * @param name The name of the artifact
+     * @return The artifact metadata. {@link ArtifactMetadata#isChanged()} is false when nothing changed since the last call
+     * @throws IOException Thrown when the file could not be loaded or parsed. The last known state is kept, so the next poll
+     * asks for the file again instead of treating it as unchanged
+     */
+    private ArtifactMetadata readMetadata(String path, String group, String name) throws IOException {
+        PolledMetadata previous = polled.get(path);
         Collection<String> versions = new LinkedHashSet<>();
+        String lastUpdated;
 
         try {
-            URL url = new URL(path);
-            XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(url.openStream());
+            UpstreamClient.Response response = previous == null
+                    ? UpstreamClient.get(path)
+                    : UpstreamClient.get(path, previous.etag, previous.lastModified);
 
-            while (reader.hasNext()) {
-                if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("version")) {
-                    String text = reader.getElementText();
-                    versions.add(text);
-                }
+            if (previous != null && response.getStatus() == 304) {
+                return previous.metadata.unchanged();
+            }
+
+            if (!response.isSuccess())
+                throw new IOException("Server returned HTTP " + response.getStatus());
+
+            String etag = response.header("ETag");
+            String lastModified = response.header("Last-Modified");
+
+            lastUpdated = parseMetadata(response.stream(), versions);
+
+            // Some mavens don't support conditional requests, but still bump lastUpdated on every publish
+            if (previous != null && lastUpdated != null && lastUpdated.equals(previous.lastUpdated)) {
+                polled.put(path, new PolledMetadata(etag, lastModified, lastUpdated, previous.metadata));
+                return previous.metadata.unchanged();
             }
 
-            reader.close();
             List<String> list = new ArrayList<>(versions);
             Collections.reverse(list);
             versions.clear();
             versions.addAll(list);
 
-        } catch (IOException | XMLStreamException e) {
-            LOGGER.error("Failed to load " + path, e);
+            ArtifactMetadata metadata = new ArtifactMetadata(group, name, versions);
+            polled.put(path, new PolledMetadata(etag, lastModified, lastUpdated, metadata));
+            return metadata;
+        } catch (XMLStreamException e) {
+            throw new IOException("Failed to parse " + path, e);
+        }
+    }
+
+    /**
+     * Parse the versions out of a maven-metadata.xml file
+     * @param stream The metadata file
+     * @param versions The collection to add the versions to, in file order
+     * @return The lastUpdated value of the file, or null if it has none
+     * @throws XMLStreamException Thrown when the file is not valid xml
+     */
+    @Nullable
+    static String parseMetadata(InputStream stream, Collection<String> versions) throws XMLStreamException {
+        String lastUpdated = null;
+        XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(stream);
+
+        while (reader.hasNext()) {
+            if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                if (reader.getLocalName().equals("version")) {
+                    versions.add(reader.getElementText());
+                } else if (reader.getLocalName().equals("lastUpdated")) {
+                    lastUpdated = reader.getElementText();
+                }
+            }
         }
 
-        return versions;
+        reader.close();
+        return lastUpdated;
     }
 
     public ArtifactMetadata getMetadata(String group, String name) throws IOException {
-        Collection<String> versions = readVersionsFromPom(String.format("%s%s/%s/maven-metadata.xml",
+        return readMetadata(metadataPath(group, name), group, name);
+    }
+
+    /**
+     * Get the metadata from the last poll without contacting the maven, for sources that are not being refreshed.
+     * The maven is only polled when this artifact was never loaded before
+     * @param group The group of the artifact
+     * @param name The name of the artifact
+     * @return The last known metadata, marked as not changed
+     */
+    public ArtifactMetadata getKnownMetadata(String group, String name) throws IOException {
+        PolledMetadata previous = polled.get(metadataPath(group, name));
+        return previous == null ? getMetadata(group, name) : previous.metadata.unchanged();
+    }
+
+    /**
+     * Forget the last known state of every artifact, so the next poll loads every file in full
+     */
+    public void forget() {
+        polled.clear();
+    }
+
+    private String metadataPath(String group, String name) {
+        return String.format("%s%s/%s/maven-metadata.xml",
                 this.url,
                 String.join("/", group.split("\\.")),
                 name
-        ));
+        );
+    }
 
-        return new ArtifactMetadata(group, name, versions);
+    @AllArgsConstructor
+    private static class PolledMetadata {
+        final String etag;
+        final String lastModified;
+        final String lastUpdated;
+        final ArtifactMetadata metadata;
     }
 
     public class ArtifactMetadata implements Iterable<ArtifactMetadata.Artifact> {
@@ -70,18 +151,43 @@ public class MavenRepository {
         final String name;
         final Collection<String> versions;
         final Collection<Artifact> artifacts;
+        @Getter
+        final boolean changed;
+        // Shared by the maven ids and urls of every artifact, so they aren't formatted again for each one
+        final String mavenPrefix;
+        final String urlPrefix;
 
         ArtifactMetadata(String group, String name, Collection<String> versions) {
             this.group = group;
             this.name = name;
             this.versions = versions;
             this.artifacts = new LinkedHashSet<>();
+            this.changed = true;
+            this.mavenPrefix = group + ":" + name + ":";
+            this.urlPrefix = MavenRepository.this.url + group.replace('.', '/') + "/" + name + "/";
 
             for (String version : versions) {
                 this.artifacts.add(new Artifact(version));
             }
         }
 
+        private ArtifactMetadata(ArtifactMetadata metadata) {
+            this.group = metadata.group;
+            this.name = metadata.name;
+            this.versions = metadata.versions;
+            this.artifacts = metadata.artifacts;
+            this.changed = false;
+            this.mavenPrefix = metadata.mavenPrefix;
+            this.urlPrefix = metadata.urlPrefix;
+        }
+
+        /**
+         * @return This metadata, marked as not changed since the last poll
+         */
+        ArtifactMetadata unchanged() {
+            return changed ? new ArtifactMetadata(this) : this;
+        }
+
         @NotNull
         @Override
         public Iterator<ArtifactMetadata.Artifact> iterator() {
@@ -99,7 +205,7 @@ public class MavenRepository {
             final String version;
 
             public String mavenId() {
-                return String.format("%s:%s:%s", ArtifactMetadata.this.group, ArtifactMetadata.this.name, this.version);
+                return ArtifactMetadata.this.mavenPrefix + this.version;
             }
 
             public String group() {
@@ -115,14 +221,7 @@ public class MavenRepository {
             }
 
             public String url(String ext) {
-                return String.format("%s%s/%s/%s/%s-%s." + ext,
-                        MavenRepository.this.url,
-                        ArtifactMetadata.this.group.replaceAll("\\.", "/"),
-                        ArtifactMetadata.this.name,
-                        this.version,
-                        ArtifactMetadata.this.name,
-                        this.version
-                );
+                return ArtifactMetadata.this.urlPrefix + this.version + "/" + ArtifactMetadata.this.name + "-" + this.version + "." + ext;
             }
         }
     }
@@ -9,10 +9,13 @@ import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import lombok.Getter;
+import net.flintloader.meta.Constants;
+import net.flintloader.meta.utils.UpstreamClient;
 
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -24,7 +27,7 @@ public class MinecraftMaven {
         URL url = null;
 
         try {
-            url = new URL("https://launchermeta.mojang.com/mc/game/version_manifest.json");
+            url = new URL(Constants.MINECRAFT_MANIFEST);
         } catch (Exception e) {
             e.printStackTrace();
             throw new RuntimeException("Failed to load Minecraft version manifest");
@@ -33,23 +36,28 @@ public class MinecraftMaven {
         MANIFEST = url;
     }
 
+    // Last loaded manifest, used for conditional requests
+    private static MinecraftMaven previous;
+    private static String previousEtag;
+    private static String previousLastModified;
+
     @SuppressWarnings({"unused", "MismatchedQueryAndUpdateOfCollection"})
+    @Getter
     private List<Version> versions;
+    @Getter
+    private transient boolean changed;
 
     private MinecraftMaven() {
     }
 
+    private MinecraftMaven(List<Version> versions, boolean changed) {
+        this.versions = versions;
+        this.changed = changed;
+    }
+
     public static JsonArray get(MavenRepository.ArtifactMetadata hashedMojmap, Gson gson) {
         JsonArray versions = new JsonArray();
-
-        InputStreamReader reader;
-        try {
-            reader = new InputStreamReader(MANIFEST.openStream());
-        } catch (IOException e) {
-            e.printStackTrace();
-            throw new RuntimeException("Failed to load Minecraft version manifest");
-        }
-        MinecraftMaven meta = gson.fromJson(reader, MinecraftMaven.class);
+        MinecraftMaven meta = getManifest(gson);
 
         for (Version version : meta.versions) {
             if (hashedMojmap.contains(version.id)) {
@@ -66,17 +74,61 @@ public class MinecraftMaven {
     }
 
     public static List<Version> getAll(Gson gson) {
+        return new ArrayList<>(getManifest(gson).versions);
+    }
 
-        InputStreamReader reader;
+    /**
+     * Load the launcher manifest. The request is conditional on the ETag and Last-Modified
+     * of the previous response, and the manifest is only parsed when it changed
+     * @param gson The Gson instance used to parse the manifest
+     * @return The manifest. {@link #isChanged()} is false when nothing changed since the last call
+     */
+    public static synchronized MinecraftMaven getManifest(Gson gson) {
         try {
-            reader = new InputStreamReader(MANIFEST.openStream());
+            UpstreamClient.Response response = previous == null
+                    ? UpstreamClient.get(MANIFEST.toString())
+                    : UpstreamClient.get(MANIFEST.toString(), previousEtag, previousLastModified);
+
+            if (previous != null && response.getStatus() == 304) {
+                return new MinecraftMaven(previous.versions, false);
+            }
+
+            if (!response.isSuccess())
+                throw new IOException("Server returned HTTP " + response.getStatus());
+
+            MinecraftMaven meta;
+            try (InputStreamReader reader = new InputStreamReader(response.stream(), StandardCharsets.UTF_8)) {
+                meta = gson.fromJson(reader, MinecraftMaven.class);
+            }
+
+            meta.changed = true;
+            previous = meta;
+            previousEtag = response.header("ETag");
+            previousLastModified = response.header("Last-Modified");
+            return meta;
         } catch (IOException e) {
             e.printStackTrace();
             throw new RuntimeException("Failed to load Minecraft version manifest");
         }
-        MinecraftMaven meta = gson.fromJson(reader, MinecraftMaven.class);
+    }
+
+    /**
+     * Get the last loaded manifest without contacting Mojang, for when the game versions are not being refreshed.
+     * The manifest is only requested when it was never loaded before
+     * @param gson The Gson instance used to parse the manifest
+     * @return The last loaded manifest, marked as not changed
+     */
+    public static synchronized MinecraftMaven getKnownManifest(Gson gson) {
+        return previous == null ? getManifest(gson) : new MinecraftMaven(previous.versions, false);
+    }
 
-        return new ArrayList<>(meta.versions);
+    /**
+     * Forget the last loaded manifest, so the next poll loads it in full
+     */
+    public static synchronized void forget() {
+        previous = null;
+        previousEtag = null;
+        previousLastModified = null;
     }
 
     @Getter
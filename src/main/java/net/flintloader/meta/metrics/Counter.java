@@ -0,0 +1,47 @@
+/**
+ * This file is part of flint-meta and is licensed under the MIT License
+ */
+package net.flintloader.meta.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author HypherionSA
+ * Monotonic counter, with one LongAdder per label combination so concurrent increments don't contend.
+ * Names end in _total, so the HELP and TYPE lines name the series that is written
+ */
+public class Counter extends Metric {
+
+    private final Map<Labels, LongAdder> children = new ConcurrentHashMap<>();
+
+    Counter(String name, String help, String... labelNames) {
+        super(name, help, labelNames);
+    }
+
+    /**
+     * Increment the counter by one
+     * @param labelValues The values of the labels, in the order they were declared
+     */
+    public void inc(String... labelValues) {
+        Labels labels = new Labels(labelValues);
+        LongAdder adder = children.get(labels);
+
+        if (adder == null)
+            adder = children.computeIfAbsent(labels, k -> new LongAdder());
+
+        adder.increment();
+    }
+
+    @Override
+    void write(StringBuilder out) {
+        writeHeader(out, "counter");
+
+        children.forEach((labels, adder) -> {
+            out.append(name);
+            writeLabels(out, labels, null);
+            out.append(' ').append(adder.sum()).append('\n');
+        });
+    }
+}
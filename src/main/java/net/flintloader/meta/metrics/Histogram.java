@@ -0,0 +1,100 @@
+/**
+ * This file is part of flint-meta and is licensed under the MIT License
+ */
+package net.flintloader.meta.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author HypherionSA
+ * Fixed bucket histogram. Observations only increment striped adders, the cumulative
+ * bucket counts Prometheus expects are computed when the metrics are scraped
+ */
+public class Histogram extends Metric {
+
+    private final double[] buckets;
+    private final Map<Labels, Child> children = new ConcurrentHashMap<>();
+
+    /**
+     * @param buckets The upper bounds of the buckets, in ascending order. +Inf is added automatically
+     */
+    Histogram(String name, String help, double[] buckets, String... labelNames) {
+        super(name, help, labelNames);
+        this.buckets = buckets;
+    }
+
+    /**
+     * Record a value
+     * @param value The observed value
+     * @param labelValues The values of the labels, in the order they were declared
+     */
+    public void observe(double value, String... labelValues) {
+        Labels labels = new Labels(labelValues);
+        Child child = children.get(labels);
+
+        if (child == null)
+            child = children.computeIfAbsent(labels, k -> new Child(buckets.length));
+
+        int bucket = 0;
+        while (bucket < buckets.length && value > buckets[bucket]) {
+            bucket++;
+        }
+
+        child.counts[bucket].increment();
+        child.sum.add(value);
+    }
+
+    /**
+     * Record a duration in seconds
+     * @param startNanos The start of the duration, from System.nanoTime()
+     * @param labelValues The values of the labels, in the order they were declared
+     */
+    public void observeSince(long startNanos, String... labelValues) {
+        observe((System.nanoTime() - startNanos) / 1e9, labelValues);
+    }
+
+    @Override
+    void write(StringBuilder out) {
+        writeHeader(out, "histogram");
+
+        children.forEach((labels, child) -> {
+            long cumulative = 0;
+
+            for (int i = 0; i <= buckets.length; i++) {
+                cumulative += child.counts[i].sum();
+                out.append(name).append("_bucket");
+                writeLabels(out, labels, i < buckets.length ? format(buckets[i]) : "+Inf");
+                out.append(' ').append(cumulative).append('\n');
+            }
+
+            out.append(name).append("_sum");
+            writeLabels(out, labels, null);
+            out.append(' ').append(child.sum.sum()).append('\n');
+
+            out.append(name).append("_count");
+            writeLabels(out, labels, null);
+            out.append(' ').append(cumulative).append('\n');
+        });
+    }
+
+    private static String format(double bound) {
+        return bound == Math.rint(bound) ? Long.toString((long) bound) : Double.toString(bound);
+    }
+
+    private static class Child {
+        // One extra bucket for values above the largest bound
+        final LongAdder[] counts;
+        final DoubleAdder sum = new DoubleAdder();
+
+        Child(int buckets) {
+            counts = new LongAdder[buckets + 1];
+
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = new LongAdder();
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * This file is part of flint-meta and is licensed under the MIT License
+ */
+package net.flintloader.meta.metrics;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * @author HypherionSA
+ * Base class of the metric types, handling names, labels and the Prometheus text format
+ */
+abstract class Metric {
+
+    final String name;
+    final String help;
+    final String[] labelNames;
+
+    Metric(String name, String help, String... labelNames) {
+        this.name = name;
+        this.help = help;
+        this.labelNames = labelNames;
+    }
+
+    /**
+     * Append the metric in the Prometheus text exposition format
+     * @param out The output to write to
+     */
+    abstract void write(StringBuilder out);
+
+    void writeHeader(StringBuilder out, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * @param le The histogram bucket bound, or null for metrics without one
+     */
+    void writeLabels(StringBuilder out, Labels labels, @Nullable String le) {
+        if (labelNames.length == 0 && le == null)
+            return;
+
+        out.append('{');
+
+        for (int i = 0; i < labelNames.length; i++) {
+            if (i > 0)
+                out.append(',');
+
+            out.append(labelNames[i]).append("=\"");
+            escape(out, labels.values[i]);
+            out.append('"');
+        }
+
+        if (le != null) {
+            if (labelNames.length > 0)
+                out.append(',');
+
+            out.append("le=\"").append(le).append('"');
+        }
+
+        out.append('}');
+    }
+
+    private static void escape(StringBuilder out, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            switch (c) {
+                case '\\' -> out.append("\\\\");
+                case '"' -> out.append("\\\"");
+                case '\n' -> out.append("\\n");
+                default -> out.append(c);
+            }
+        }
+    }
+
+    /**
+     * Label values of one child of a metric, usable as a map key
+     */
+    static final class Labels {
+        final String[] values;
+        private final int hash;
+
+        Labels(String[] values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Labels other && Arrays.equals(values, other.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
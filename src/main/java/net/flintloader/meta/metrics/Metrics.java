@@ -0,0 +1,101 @@
+/**
+ * This file is part of flint-meta and is licensed under the MIT License
+ */
+package net.flintloader.meta.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleSupplier;
+
+/**
+ * @author HypherionSA
+ * All metrics exposed on /metrics. Recording only touches striped adders, so it's cheap enough to leave on in production
+ */
+public class Metrics {
+
+    private static final double[] LATENCY_BUCKETS = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+    private static final double[] SIZE_BUCKETS = {256, 1024, 4096, 16384, 65536, 262144, 1048576, 4194304};
+    private static final double[] REFRESH_BUCKETS = {0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60};
+
+    private static final List<Metric> METRICS = new ArrayList<>();
+    private static final List<Gauge> GAUGES = new ArrayList<>();
+
+    public static final Histogram REQUEST_DURATION = register(new Histogram("flintmeta_http_request_duration_seconds",
+            "Time spent handling requests, per route", LATENCY_BUCKETS, "route"));
+    public static final Histogram RESPONSE_SIZE = register(new Histogram("flintmeta_http_response_size_bytes",
+            "Size of response bodies as sent, per route", SIZE_BUCKETS, "route"));
+    public static final Counter REQUESTS = register(new Counter("flintmeta_http_requests_total",
+            "Requests handled, per route and status code", "route", "status"));
+    public static final Counter RATE_LIMITED = register(new Counter("flintmeta_rate_limited_requests_total",
+            "Requests refused with 429 by the rate limiter, per route class", "class"));
+
+    public static final Histogram REFRESH_DURATION = register(new Histogram("flintmeta_refresh_source_duration_seconds",
+            "Time taken to load each upstream source during a database update", REFRESH_BUCKETS, "source"));
+    public static final Counter REFRESH_FAILURES = register(new Counter("flintmeta_refresh_source_failures_total",
+            "Upstream sources that failed to load during a database update", "source"));
+    public static final Counter REFRESH_TRIGGERS = register(new Counter("flintmeta_refresh_triggers_total",
+            "Database updates requested, per trigger", "trigger"));
+    public static final Histogram UPDATE_DURATION = register(new Histogram("flintmeta_database_update_duration_seconds",
+            "Time taken by complete database updates, including skipped ones", REFRESH_BUCKETS));
+
+    public static final Histogram UPSTREAM_DURATION = register(new Histogram("flintmeta_upstream_request_duration_seconds",
+            "Time taken by requests to the mavens and Mojang, per host", LATENCY_BUCKETS, "host"));
+    public static final Counter UPSTREAM_ERRORS = register(new Counter("flintmeta_upstream_errors_total",
+            "Requests to the mavens and Mojang that failed or returned a server error, per host", "host"));
+
+    public static final Counter CACHE_HITS = register(new Counter("flintmeta_cache_hits_total",
+            "Cache lookups that were served from the cache", "cache"));
+    public static final Counter CACHE_MISSES = register(new Counter("flintmeta_cache_misses_total",
+            "Cache lookups that had to load the value", "cache"));
+
+    private Metrics() {
+    }
+
+    /**
+     * Register a value that is read every time the metrics are scraped
+     * @param name The metric name
+     * @param help The description of the metric
+     * @param value Supplies the current value
+     */
+    public static synchronized void gauge(String name, String help, DoubleSupplier value) {
+        GAUGES.removeIf(g -> g.name.equals(name));
+        GAUGES.add(new Gauge(name, help, value));
+    }
+
+    /**
+     * @return All metrics in the Prometheus text exposition format
+     */
+    public static synchronized String scrape() {
+        StringBuilder out = new StringBuilder(16384);
+
+        for (Metric metric : METRICS) {
+            metric.write(out);
+        }
+
+        for (Gauge gauge : GAUGES) {
+            gauge.write(out);
+        }
+
+        return out.toString();
+    }
+
+    private static <T extends Metric> T register(T metric) {
+        METRICS.add(metric);
+        return metric;
+    }
+
+    private static class Gauge extends Metric {
+        private final DoubleSupplier value;
+
+        Gauge(String name, String help, DoubleSupplier value) {
+            super(name, help);
+            this.value = value;
+        }
+
+        @Override
+        void write(StringBuilder out) {
+            writeHeader(out, "gauge");
+            out.append(name).append(' ').append(value.getAsDouble()).append('\n');
+        }
+    }
+}
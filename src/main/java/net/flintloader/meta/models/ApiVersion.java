@@ -1,10 +1,12 @@
 package net.flintloader.meta.models;
 
 import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 
 @AllArgsConstructor
 @Getter
+@EqualsAndHashCode
 public class ApiVersion {
 
     String version;
@@ -4,6 +4,7 @@
 package net.flintloader.meta.models;
 
 import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -13,6 +14,7 @@ import lombok.Setter;
  */
 @AllArgsConstructor
 @Getter
+@EqualsAndHashCode
 public class GameVersion {
 
     String version;
@@ -1,11 +1,13 @@
 package net.flintloader.meta.models;
 
 import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
 
 @AllArgsConstructor
 @Getter
+@EqualsAndHashCode
 public class InstallerVersion {
     String url;
     String maven;
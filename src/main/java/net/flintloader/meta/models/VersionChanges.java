@@ -0,0 +1,91 @@
+/**
+ * This file is part of flint-meta and is licensed under the MIT License
+ */
+package net.flintloader.meta.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * @author HypherionSA
+ * Entries added to or removed from the version lists between two generations of the database.
+ * Entries that changed are listed as removed and added, so clients can apply removals first and then additions
+ */
+@AllArgsConstructor
+@Getter
+public class VersionChanges {
+
+    long since;
+    long generation;
+    // Only lists that changed are included, keyed the same as the full /v1/versions response
+    Map<String, ListChanges> changes;
+
+    /**
+     * Compare two generations of the database
+     * @param since The older generation number
+     * @param older The contents of the older generation
+     * @param generation The newer generation number
+     * @param newer The contents of the newer generation
+     * @return The changes between the generations
+     */
+    public static VersionChanges between(long since, AllVersions older, long generation, AllVersions newer) {
+        Map<String, ListChanges> changes = new LinkedHashMap<>();
+
+        compare(changes, "game", older.getGame(), newer.getGame(), GameVersion::getVersion);
+        compare(changes, "loaders", older.getLoaders(), newer.getLoaders(), LoaderVersion::getVersion);
+        compare(changes, "mappings", older.getMappings(), newer.getMappings(), YarnVersion::getVersion);
+        compare(changes, "intermediary", older.getIntermediary(), newer.getIntermediary(), IntermediaryVersion::getVersion);
+        compare(changes, "installers", older.getInstallers(), newer.getInstallers(), InstallerVersion::getVersion);
+        compare(changes, "api", older.getApi(), newer.getApi(), ApiVersion::getVersion);
+
+        return new VersionChanges(since, generation, changes);
+    }
+
+    private static <T> void compare(Map<String, ListChanges> changes, String name, List<T> older, List<T> newer, Function<T, String> key) {
+        // Lists of sources that didn't change are shared between generations
+        if (older == newer)
+            return;
+
+        Map<String, T> previous = new LinkedHashMap<>();
+        for (T entry : older) {
+            previous.putIfAbsent(key.apply(entry), entry);
+        }
+
+        List<Object> added = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+
+        for (T entry : newer) {
+            String version = key.apply(entry);
+            seen.add(version);
+            T old = previous.get(version);
+
+            if (old == null) {
+                added.add(entry);
+            } else if (!old.equals(entry)) {
+                // Changed entries are removed and added again
+                removed.add(version);
+                added.add(entry);
+            }
+        }
+
+        for (String version : previous.keySet()) {
+            if (!seen.contains(version))
+                removed.add(version);
+        }
+
+        if (!added.isEmpty() || !removed.isEmpty())
+            changes.put(name, new ListChanges(added, removed));
+    }
+
+    @AllArgsConstructor
+    @Getter
+    public static class ListChanges {
+        // New entries, in list order (newest first)
+        List<Object> added;
+        List<String> removed;
+    }
+}
@@ -5,8 +5,10 @@ package net.flintloader.meta.models;
 
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import net.flintloader.meta.maven.MavenRepository;
+import net.flintloader.meta.utils.StringPool;
 
 /**
  * @author HypherionSA
@@ -14,6 +16,7 @@ import net.flintloader.meta.maven.MavenRepository;
  */
 @Getter
 @AllArgsConstructor(access = AccessLevel.PRIVATE)
+@EqualsAndHashCode
 public class YarnVersion {
     String gameVersion;
     String maven;
@@ -22,15 +25,20 @@ public class YarnVersion {
     int build;
     boolean stable;
 
-    public static YarnVersion of(MavenRepository.ArtifactMetadata.Artifact artifact) {
-        String[] v;
+    /**
+     * @param artifact The yarn artifact
+     * @param gameVersions Pool of game version strings, so entries of the same game version share one
+     */
+    public static YarnVersion of(MavenRepository.ArtifactMetadata.Artifact artifact, StringPool gameVersions) {
+        String version = artifact.getVersion();
+        int separator = version.indexOf("+build.");
 
-        if (artifact.getVersion().contains("+build.")) {
-            v = artifact.getVersion().split("\\+build.");
-        } else {
-            v = new String[]{artifact.getVersion(), "0"};
+        if (separator < 0) {
+            return new YarnVersion(gameVersions.get(version), artifact.mavenId(), version, "+build.", 0, false);
         }
 
-        return new YarnVersion(v[0], artifact.mavenId(), artifact.getVersion(), "+build.", Integer.parseInt(v[1]), false);
+        String gameVersion = gameVersions.get(version.substring(0, separator));
+        int build = Integer.parseInt(version.substring(separator + "+build.".length()));
+        return new YarnVersion(gameVersion, artifact.mavenId(), version, "+build.", build, false);
     }
 }
@@ -11,9 +11,12 @@ import com.google.gson.JsonObject;
 import net.flintloader.meta.Constants;
 import net.flintloader.meta.models.LoaderInfo;
 
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 /**
  * @author HypherionSA
@@ -22,16 +25,36 @@ import java.util.Date;
  */
 public class ProfileUtils {
 
-    private static final DateFormat ISO_8601 = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ");
+    // Format of the time and releaseTime fields of a profile
+    public static final DateTimeFormatter ISO_8601 = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ssZ");
 
+    /**
+     * Build a launcher profile for a loader. The launcher meta of the loader is not modified
+     * @param info The loader, intermediary and launcher meta to build the profile from
+     * @param side The side of the profile, client or server
+     * @return The profile json
+     */
     public static JsonObject buildProfileJson(LoaderInfo info, String side) {
+        return buildProfileJson(info, side, ZonedDateTime.now());
+    }
+
+    /**
+     * Build a launcher profile for a loader, with a fixed time
+     * @param info The loader, intermediary and launcher meta to build the profile from
+     * @param side The side of the profile, client or server
+     * @param time The time and release time of the profile
+     * @return The profile json
+     */
+    public static JsonObject buildProfileJson(LoaderInfo info, String side, ZonedDateTime time) {
         JsonObject launcherMeta = info.getLauncherMeta();
 
-        String profileName = String.format("punch-%s-%s", info.getLoader().getVersion(), info.getIntermediary().getVersion());
+        String profileName = getProfileName(info.getLoader().getVersion(), info.getIntermediary().getVersion());
 
         JsonObject librariesObject = launcherMeta.get("libraries").getAsJsonObject();
         // Build the libraries array with the existing libs + loader and intermediary
-        JsonArray libraries = (JsonArray) librariesObject.get("common");
+        // The launcher meta is shared through the cache, so it's never modified here
+        JsonArray libraries = new JsonArray();
+        libraries.addAll(librariesObject.get("common").getAsJsonArray());
         libraries.add(formatLibrary(info.getIntermediary().getMaven(), Constants.FLINT_MIRROR));
         libraries.add(formatLibrary(info.getLoader().getMaven(), Constants.FLINT_MAVEN));
 
@@ -39,7 +62,7 @@ public class ProfileUtils {
             libraries.addAll(librariesObject.get(side).getAsJsonArray());
         }
 
-        String currentTime = ISO_8601.format(new Date());
+        String currentTime = ISO_8601.format(time);
 
         JsonObject profile = new JsonObject();
         profile.addProperty("id", profileName);
@@ -78,6 +101,54 @@ public class ProfileUtils {
         return profile;
     }
 
+    /**
+     * Get the name of a launcher profile
+     * @param loaderVersion The loader version
+     * @param gameVersion The game version
+     * @return The profile name, as used for the profile id and file names
+     */
+    public static String getProfileName(String loaderVersion, String gameVersion) {
+        return String.format("punch-%s-%s", loaderVersion, gameVersion);
+    }
+
+    /**
+     * Write a launcher profile zip, the way the vanilla launcher expects it in its versions folder.
+     * Based on https://github.com/FabricMC/fabric-meta/blob/master/src/main/java/net/fabricmc/meta/web/ProfileHandler.java
+     * @param profileName The name of the profile
+     * @param profileJson The rendered profile json
+     * @param out The stream to write the zip to. It's finished, but not closed
+     * @throws IOException Thrown when the zip could not be written
+     */
+    public static void writeProfileZip(String profileName, byte[] profileJson, OutputStream out) throws IOException {
+        writeProfileZip(profileName, profileJson, System.currentTimeMillis(), out);
+    }
+
+    /**
+     * Write a launcher profile zip with fixed entry times, so the same profile always gives the same bytes
+     * @param profileName The name of the profile
+     * @param profileJson The rendered profile json
+     * @param time The modification time of the zip entries
+     * @param out The stream to write the zip to. It's finished, but not closed
+     * @throws IOException Thrown when the zip could not be written
+     */
+    public static void writeProfileZip(String profileName, byte[] profileJson, long time, OutputStream out) throws IOException {
+        ZipOutputStream zipStream = new ZipOutputStream(out);
+
+        ZipEntry json = new ZipEntry(profileName + "/" + profileName + ".json");
+        json.setTime(time);
+        zipStream.putNextEntry(json);
+        zipStream.write(profileJson);
+        zipStream.closeEntry();
+
+        // Empty jar file, some launchers refuse to load profiles without one
+        ZipEntry jar = new ZipEntry(profileName + "/" + profileName + ".jar");
+        jar.setTime(time);
+        zipStream.putNextEntry(jar);
+        zipStream.closeEntry();
+
+        zipStream.finish();
+    }
+
     private static JsonObject formatLibrary(String mavenPath, String url) {
         JsonObject jsonObject = new JsonObject();
         jsonObject.addProperty("name", mavenPath);
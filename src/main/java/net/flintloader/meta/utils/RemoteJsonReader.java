@@ -6,10 +6,11 @@ package net.flintloader.meta.utils;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
-import java.io.BufferedReader;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.net.URL;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 
 /**
  * @author HypherionSA
@@ -17,17 +18,21 @@ import java.net.URL;
  */
 public class RemoteJsonReader {
 
+    /**
+     * @throws FileNotFoundException Thrown when the file does not exist (404)
+     * @throws IOException Thrown when the file could not be loaded
+     */
     public static JsonObject readJsonFromUrl(String urlString) throws IOException {
-        URL url = new URL(urlString);
+        UpstreamClient.Response response = UpstreamClient.get(urlString);
 
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream()))) {
-            StringBuilder jsonContent = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                jsonContent.append(line);
-            }
+        if (response.getStatus() == 404)
+            throw new FileNotFoundException(urlString);
 
-            return JsonParser.parseString(jsonContent.toString()).getAsJsonObject();
+        if (!response.isSuccess())
+            throw new IOException("Server returned HTTP " + response.getStatus() + " for " + urlString);
+
+        try (Reader reader = new InputStreamReader(response.stream(), StandardCharsets.UTF_8)) {
+            return JsonParser.parseReader(reader).getAsJsonObject();
         }
     }
 
@@ -0,0 +1,26 @@
+/**
+ * This file is part of flint-meta and is licensed under the MIT License
+ */
+package net.flintloader.meta.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author HypherionSA
+ * Deduplicates equal strings, so values that repeat across thousands of entries, like game versions, are stored once.
+ * Unlike {@link String#intern()}, a pool only lives as long as the update that uses it
+ */
+public class StringPool {
+
+    private final Map<String, String> strings = new HashMap<>();
+
+    /**
+     * @param value A string
+     * @return The first equal string that was passed to this pool
+     */
+    public String get(String value) {
+        String existing = strings.putIfAbsent(value, value);
+        return existing != null ? existing : value;
+    }
+}
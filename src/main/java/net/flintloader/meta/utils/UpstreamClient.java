@@ -0,0 +1,143 @@
+/**
+ * This file is part of flint-meta and is licensed under the MIT License
+ */
+package net.flintloader.meta.utils;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import net.flintloader.meta.metrics.Metrics;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * @author HypherionSA
+ * Shared HTTP client for all requests to the mavens and Mojang. Connections are pooled and kept alive,
+ * HTTP/2 and gzip are used when the server supports them, and every request has a timeout,
+ * so a hanging upstream can't stall a database update forever
+ */
+public class UpstreamClient {
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    // Maximum number of requests in flight to a single host
+    private static final int MAX_REQUESTS_PER_HOST = 8;
+
+    private static final HttpClient CLIENT = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(CONNECT_TIMEOUT)
+            .build();
+
+    private static final Map<String, Semaphore> HOST_LIMITS = new ConcurrentHashMap<>();
+
+    private UpstreamClient() {
+    }
+
+    /**
+     * Send a GET request and read the full response
+     * @param url The url to request
+     * @return The response. Non 2xx responses are returned as well, and not thrown
+     * @throws IOException Thrown when the request failed or timed out
+     */
+    public static Response get(String url) throws IOException {
+        return get(url, null, null);
+    }
+
+    /**
+     * Send a conditional GET request and read the full response
+     * @param url The url to request
+     * @param etag The ETag of the last response, sent as If-None-Match
+     * @param lastModified The Last-Modified of the last response, sent as If-Modified-Since
+     * @return The response. Non 2xx responses, including 304, are returned as well, and not thrown
+     * @throws IOException Thrown when the request failed or timed out
+     */
+    public static Response get(String url, @Nullable String etag, @Nullable String lastModified) throws IOException {
+        URI uri = URI.create(url);
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                .timeout(REQUEST_TIMEOUT)
+                .header("Accept-Encoding", "gzip")
+                .GET();
+
+        if (etag != null)
+            request.header("If-None-Match", etag);
+        if (lastModified != null)
+            request.header("If-Modified-Since", lastModified);
+
+        Semaphore limit = HOST_LIMITS.computeIfAbsent(uri.getHost(), host -> new Semaphore(MAX_REQUESTS_PER_HOST));
+
+        try {
+            if (!limit.tryAcquire(REQUEST_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS))
+                throw new IOException("Timed out waiting for a connection to " + uri.getHost());
+
+            long start = System.nanoTime();
+
+            try {
+                HttpResponse<byte[]> response = CLIENT.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+
+                if (response.statusCode() >= 500)
+                    Metrics.UPSTREAM_ERRORS.inc(uri.getHost());
+
+                return new Response(response.statusCode(), response.headers(), decode(response));
+            } catch (IOException e) {
+                Metrics.UPSTREAM_ERRORS.inc(uri.getHost());
+                throw e;
+            } finally {
+                // Time spent waiting for the per host limit is left out, so this only measures the upstream itself
+                Metrics.UPSTREAM_DURATION.observeSince(start, uri.getHost());
+                limit.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while requesting " + url);
+        }
+    }
+
+    private static byte[] decode(HttpResponse<byte[]> response) throws IOException {
+        byte[] body = response.body();
+
+        if (response.headers().firstValue("Content-Encoding").map(e -> e.equalsIgnoreCase("gzip")).orElse(false)) {
+            try (InputStream stream = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                return stream.readAllBytes();
+            }
+        }
+
+        return body;
+    }
+
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    public static class Response {
+        private final int status;
+        private final HttpHeaders headers;
+        private final byte[] body;
+
+        @Nullable
+        public String header(String name) {
+            return headers.firstValue(name).orElse(null);
+        }
+
+        public boolean isSuccess() {
+            return status >= 200 && status < 300;
+        }
+
+        public InputStream stream() {
+            return new ByteArrayInputStream(body);
+        }
+    }
+}
@@ -0,0 +1,333 @@
+/**
+ * This file is part of flint-meta and is licensed under the MIT License
+ */
+package net.flintloader.meta.web;
+
+import com.google.gson.JsonParser;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import net.flintloader.meta.utils.CompressionUtils;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author HypherionSA
+ * A response that is rendered and compressed once and then served as raw bytes.
+ * Every response is kept as JSON, and as CBOR once a client asks for the binary format
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class CachedResponse {
+
+    private final Representation json;
+    private final long lastModified;
+    private final String lastModifiedHeader;
+    // Compress the CBOR variants at the fast levels as well
+    @Getter(AccessLevel.NONE)
+    private final boolean fast;
+    // Almost no client asks for CBOR, so it is derived from the JSON body on the first request that does.
+    // Concurrent requests share that render
+    @Getter(AccessLevel.NONE)
+    private final AtomicReference<CompletableFuture<Representation>> cbor = new AtomicReference<>();
+
+    /**
+     * Serialize an object with the same settings as {@link WebServer#jsonResponse}
+     * @param object The object to render
+     * @param lastModified The time the data was generated
+     * @param previous The response this one replaces. If the content did not change, it is reused, so
+     *                 clients keep their Last-Modified date and nothing gets compressed again
+     * @return The pre-rendered response
+     */
+    public static CachedResponse of(Object object, long lastModified, @Nullable CachedResponse previous) {
+        return render(object, lastModified, previous, false);
+    }
+
+    /**
+     * Serialize an object while a request is waiting for it. Same as {@link #of}, but compressed at fast levels
+     * @param object The object to render
+     * @param lastModified The time the data was generated
+     * @return The rendered response
+     */
+    public static CachedResponse onRequest(Object object, long lastModified) {
+        return render(object, lastModified, null, true);
+    }
+
+    private static CachedResponse render(Object object, long lastModified, @Nullable CachedResponse previous, boolean fast) {
+        byte[] body;
+        try (ResponseBuffer buffer = ResponseBuffer.acquire().json(WebServer.GSON, object)) {
+            body = buffer.toByteArray();
+        }
+
+        String etag = etag(body);
+
+        // The CBOR body is derived from the same content, so it can't have changed either
+        if (previous != null && previous.getEtag().equals(etag) && Arrays.equals(previous.getBody(), body)) {
+            return previous;
+        }
+
+        // HTTP dates only have second precision
+        long seconds = lastModified / 1000 * 1000;
+        String header = DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(seconds).atOffset(ZoneOffset.UTC));
+
+        return new CachedResponse(
+                Representation.of("application/json", body, etag, fast),
+                seconds,
+                header,
+                fast);
+    }
+
+    /**
+     * Pick the best variant the client accepts. CBOR is only sent when the client lists it in Accept,
+     * and the encoding with the highest quality in Accept-Encoding is picked. Ties prefer compression, brotli first
+     * @param accept The Accept request header
+     * @param acceptEncoding The Accept-Encoding request header
+     * @return The variant to send
+     */
+    public Variant select(@Nullable String accept, @Nullable String acceptEncoding) {
+        return isCborAccepted(accept) ? getCbor().select(acceptEncoding) : json.select(acceptEncoding);
+    }
+
+    /**
+     * Get the CBOR representation, rendering it from the JSON body on the first call
+     * @return The CBOR body with its pre-compressed variants
+     */
+    public Representation getCbor() {
+        CompletableFuture<Representation> result = cbor.get();
+
+        if (result == null) {
+            CompletableFuture<Representation> created = new CompletableFuture<>();
+            result = cbor.compareAndExchange(null, created);
+
+            if (result == null) {
+                result = created;
+
+                try {
+                    byte[] binary = CborEncoder.encode(JsonParser.parseString(new String(getBody(), StandardCharsets.UTF_8)));
+                    created.complete(Representation.of(CborEncoder.CONTENT_TYPE, binary, etag(binary), fast));
+                } catch (RuntimeException e) {
+                    // Don't keep the failure, the next request will try again
+                    cbor.compareAndSet(created, null);
+                    created.completeExceptionally(e);
+                }
+            }
+        }
+
+        return result.join();
+    }
+
+    /**
+     * Check if the client asked for CBOR. Wildcards match JSON just as well, so only an entry for CBOR itself counts,
+     * and browsers keep getting JSON. CBOR has to rank above JSON, or equal when JSON is only matched by a wildcard
+     * @param accept The Accept request header
+     * @return True when CBOR should be sent
+     */
+    public static boolean isCborAccepted(@Nullable String accept) {
+        if (accept == null)
+            return false;
+
+        double cbor = quality(accept, CborEncoder.CONTENT_TYPE);
+
+        if (cbor <= 0)
+            return false;
+
+        double json = quality(accept, "application/json", "application/*", "*/*");
+        return cbor > json || (cbor == json && quality(accept, "application/json") < 0);
+    }
+
+    /**
+     * @return The uncompressed JSON response body
+     */
+    public byte[] getBody() {
+        return json.identity.body;
+    }
+
+    /**
+     * @return The ETag of the uncompressed JSON response body
+     */
+    public String getEtag() {
+        return json.identity.etag;
+    }
+
+    /**
+     * Build a strong ETag from the content hash of a response body
+     * @param body The response body
+     * @return The quoted ETag value
+     */
+    public static String etag(byte[] body) {
+        return etag(body, body.length);
+    }
+
+    /**
+     * Build a strong ETag from the content hash of the start of a buffer
+     * @param buffer The buffer holding the response body
+     * @param length The length of the response body
+     * @return The quoted ETag value
+     */
+    public static String etag(byte[] buffer, int length) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(buffer, 0, length);
+            byte[] hash = digest.digest();
+            return "\"" + HexFormat.of().formatHex(hash, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Pick the encoding with the highest quality in Accept-Encoding. Ties prefer compression, brotli first
+     * @param acceptEncoding The Accept-Encoding request header
+     * @param brotli If a brotli body can be sent
+     * @return br or gzip, or null to send the body uncompressed
+     */
+    @Nullable
+    static String selectEncoding(@Nullable String acceptEncoding, boolean brotli) {
+        if (acceptEncoding == null)
+            return null;
+
+        double br = brotli ? quality(acceptEncoding, "br", "*") : -1;
+        double gz = quality(acceptEncoding, "gzip", "*");
+        double best = Math.max(br, gz);
+
+        // Uncompressed is always acceptable, but only preferred when the client ranks identity above the compressed encodings
+        if (best <= 0 || quality(acceptEncoding, "identity") > best)
+            return null;
+
+        return br >= gz ? "br" : "gzip";
+    }
+
+    // Strong ETags have to differ between encodings of the same content
+    static String variantEtag(String etag, String encoding) {
+        return etag.substring(0, etag.length() - 1) + "-" + encoding + "\"";
+    }
+
+    /**
+     * Get the quality a client gives a value in an Accept or Accept-Encoding header. The most specific matching
+     * entry counts, so an entry for the value itself overrides the wildcards
+     * @param header The header
+     * @param value The value to look up, for example br or application/cbor
+     * @param wildcards The wildcards that match the value, most specific first, for example application/* before the full wildcard
+     * @return The quality between 0 and 1, or -1 when no entry matches
+     */
+    static double quality(String header, String value, String... wildcards) {
+        double quality = -1;
+        int matched = Integer.MAX_VALUE;
+
+        for (String part : header.split(",")) {
+            int params = part.indexOf(';');
+            String name = (params < 0 ? part : part.substring(0, params)).trim();
+            int specificity = specificity(name, value, wildcards);
+
+            if (specificity < 0 || specificity >= matched)
+                continue;
+
+            matched = specificity;
+            quality = params < 0 ? 1 : parseQuality(part.substring(params + 1));
+        }
+
+        return quality;
+    }
+
+    /**
+     * @return 0 when the name is the value, the index + 1 of the wildcard it is, or -1 when it doesn't match
+     */
+    private static int specificity(String name, String value, String[] wildcards) {
+        if (name.equalsIgnoreCase(value))
+            return 0;
+
+        for (int i = 0; i < wildcards.length; i++) {
+            if (name.equalsIgnoreCase(wildcards[i]))
+                return i + 1;
+        }
+
+        return -1;
+    }
+
+    /**
+     * @param params The parameters of an entry, after the first semicolon
+     * @return The q parameter, 1 when there is none, or 0 when it's invalid
+     */
+    private static double parseQuality(String params) {
+        for (String param : params.split(";")) {
+            param = param.trim();
+
+            if (param.length() > 1 && (param.charAt(0) == 'q' || param.charAt(0) == 'Q') && param.charAt(1) == '=') {
+                try {
+                    double quality = Double.parseDouble(param.substring(2).trim());
+                    return quality >= 0 && quality <= 1 ? quality : 0;
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+
+        return 1;
+    }
+
+    /**
+     * The response in one format, with its pre-compressed variants
+     */
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    public static class Representation {
+        private final Variant identity;
+        @Nullable
+        private final Variant gzip;
+        @Nullable
+        private final Variant brotli;
+
+        private static Representation of(String contentType, byte[] body, String etag, boolean fast) {
+            Variant gzip = null;
+            Variant brotli = null;
+
+            if (body.length >= CompressionUtils.MIN_SIZE) {
+                gzip = new Variant(contentType, "gzip", CompressionUtils.gzip(body, fast), variantEtag(etag, "gzip"));
+
+                byte[] compressed = CompressionUtils.brotli(body, fast);
+                if (compressed != null) {
+                    brotli = new Variant(contentType, "br", compressed, variantEtag(etag, "br"));
+                }
+            }
+
+            return new Representation(new Variant(contentType, null, body, etag), gzip, brotli);
+        }
+
+        private Variant select(@Nullable String acceptEncoding) {
+            // Small bodies have no compressed variants
+            if (gzip == null)
+                return identity;
+
+            String encoding = selectEncoding(acceptEncoding, brotli != null);
+
+            if (encoding == null)
+                return identity;
+
+            return encoding.equals("br") ? brotli : gzip;
+        }
+    }
+
+    /**
+     * One encoding of the response body
+     */
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    public static class Variant {
+        private final String contentType;
+        // Value of the Content-Encoding header, or null when uncompressed
+        @Nullable
+        private final String encoding;
+        private final byte[] body;
+        private final String etag;
+    }
+}
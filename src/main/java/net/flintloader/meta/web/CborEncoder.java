@@ -0,0 +1,156 @@
+/**
+ * This file is part of flint-meta and is licensed under the MIT License
+ */
+package net.flintloader.meta.web;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * @author HypherionSA
+ * Encodes JSON trees as CBOR (RFC 8949), the binary format served to clients that send Accept: application/cbor.
+ * The structure is exactly the same as the JSON responses: objects become maps with text keys, arrays become arrays.
+ * Integers use the shortest CBOR integer encoding, other numbers are 64-bit floats. Only definite lengths are used
+ */
+public class CborEncoder {
+
+    public static final String CONTENT_TYPE = "application/cbor";
+
+    private static final int MAJOR_UNSIGNED = 0;
+    private static final int MAJOR_NEGATIVE = 1;
+    private static final int MAJOR_TEXT = 3;
+    private static final int MAJOR_ARRAY = 4;
+    private static final int MAJOR_MAP = 5;
+
+    private static final int FALSE = 0xf4;
+    private static final int TRUE = 0xf5;
+    private static final int NULL = 0xf6;
+    private static final int FLOAT64 = 0xfb;
+
+    /**
+     * Encode a JSON tree
+     * @param element The tree to encode
+     * @param out Where the encoded bytes are written
+     */
+    public static void encode(JsonElement element, ByteArrayOutputStream out) {
+        if (element.isJsonObject()) {
+            JsonObject object = element.getAsJsonObject();
+            writeHead(out, MAJOR_MAP, object.size());
+
+            for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+                writeText(out, entry.getKey());
+                encode(entry.getValue(), out);
+            }
+        } else if (element.isJsonArray()) {
+            JsonArray array = element.getAsJsonArray();
+            writeHead(out, MAJOR_ARRAY, array.size());
+
+            for (JsonElement entry : array) {
+                encode(entry, out);
+            }
+        } else if (element.isJsonPrimitive()) {
+            writePrimitive(out, element.getAsJsonPrimitive());
+        } else {
+            out.write(NULL);
+        }
+    }
+
+    /**
+     * Encode a JSON tree
+     * @param element The tree to encode
+     * @return The encoded bytes
+     */
+    public static byte[] encode(JsonElement element) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encode(element, out);
+        return out.toByteArray();
+    }
+
+    private static void writePrimitive(ByteArrayOutputStream out, JsonPrimitive primitive) {
+        if (primitive.isBoolean()) {
+            out.write(primitive.getAsBoolean() ? TRUE : FALSE);
+        } else if (primitive.isString()) {
+            writeText(out, primitive.getAsString());
+        } else {
+            writeNumber(out, primitive.getAsNumber());
+        }
+    }
+
+    private static void writeNumber(ByteArrayOutputStream out, Number number) {
+        // Numbers parsed from upstream JSON are lazily parsed, so their text decides if they are integers
+        if (number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte) {
+            writeInteger(out, number.longValue());
+            return;
+        }
+
+        if (!(number instanceof Double || number instanceof Float)) {
+            String text = number.toString();
+
+            if (text.indexOf('.') < 0 && text.indexOf('e') < 0 && text.indexOf('E') < 0) {
+                BigInteger value = new BigInteger(text);
+
+                if (value.bitLength() < 64) {
+                    writeInteger(out, value.longValue());
+                    return;
+                }
+            }
+        }
+
+        long bits = Double.doubleToLongBits(number.doubleValue());
+        out.write(FLOAT64);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (bits >>> shift));
+        }
+    }
+
+    private static void writeInteger(ByteArrayOutputStream out, long value) {
+        if (value >= 0) {
+            writeHead(out, MAJOR_UNSIGNED, value);
+        } else {
+            // Negative integers are stored as -1 - n
+            writeHead(out, MAJOR_NEGATIVE, -1 - value);
+        }
+    }
+
+    private static void writeText(ByteArrayOutputStream out, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        writeHead(out, MAJOR_TEXT, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Write the initial byte of a data item and its argument, using the shortest form that fits
+     */
+    private static void writeHead(ByteArrayOutputStream out, int major, long argument) {
+        int type = major << 5;
+
+        if (argument < 24) {
+            out.write(type | (int) argument);
+        } else if (argument < 0x100) {
+            out.write(type | 24);
+            out.write((int) argument);
+        } else if (argument < 0x10000) {
+            out.write(type | 25);
+            writeBytes(out, argument, 2);
+        } else if (argument < 0x100000000L) {
+            out.write(type | 26);
+            writeBytes(out, argument, 4);
+        } else {
+            out.write(type | 27);
+            writeBytes(out, argument, 8);
+        }
+    }
+
+    private static void writeBytes(ByteArrayOutputStream out, long value, int count) {
+        for (int shift = (count - 1) * 8; shift >= 0; shift -= 8) {
+            out.write((int) (value >>> shift));
+        }
+    }
+}
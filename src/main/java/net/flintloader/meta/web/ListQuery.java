@@ -0,0 +1,217 @@
+/**
+ * This file is part of flint-meta and is licensed under the MIT License
+ */
+package net.flintloader.meta.web;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import io.javalin.http.Context;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * @author HypherionSA
+ * Paging, filtering and projection parameters for the list endpoints:
+ * limit, offset or cursor, stable=true and fields=a,b. Lists are newest first, so limit=1 is the latest entry.
+ * Cursors are opaque, and point at the last entry of the previous page, so pages stay stable when new versions are published
+ */
+public class ListQuery {
+
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private final int limit;
+    private final int offset;
+    @Nullable
+    private final String cursor;
+    private final boolean stable;
+    @Nullable
+    private final Set<String> fields;
+
+    private ListQuery(int limit, int offset, @Nullable String cursor, boolean stable, @Nullable Set<String> fields) {
+        this.limit = limit;
+        this.offset = offset;
+        this.cursor = cursor;
+        this.stable = stable;
+        this.fields = fields;
+    }
+
+    /**
+     * Read the list parameters of a request
+     * @param ctx The request context
+     * @return The parameters, or null when the request has none, so the full pre-rendered list can be sent
+     * @throws IllegalArgumentException Thrown when a parameter is invalid. The message can be sent to the client
+     */
+    @Nullable
+    public static ListQuery parse(Context ctx) {
+        String limit = ctx.queryParam("limit");
+        String offset = ctx.queryParam("offset");
+        String cursor = ctx.queryParam("cursor");
+        String stable = ctx.queryParam("stable");
+        String fields = ctx.queryParam("fields");
+
+        if (limit == null && offset == null && cursor == null && stable == null && fields == null)
+            return null;
+
+        if (offset != null && cursor != null)
+            throw new IllegalArgumentException("Use either offset or cursor, not both");
+
+        Set<String> fieldSet = null;
+        if (fields != null) {
+            fieldSet = new LinkedHashSet<>();
+
+            for (String field : fields.split(",")) {
+                if (!field.isBlank())
+                    fieldSet.add(field.trim());
+            }
+        }
+
+        return new ListQuery(
+                limit == null ? Integer.MAX_VALUE : parseCount("limit", limit),
+                offset == null ? 0 : parseCount("offset", offset),
+                cursor == null ? null : decodeCursor(cursor),
+                Boolean.parseBoolean(stable),
+                fieldSet);
+    }
+
+    /**
+     * Select the requested page of a list
+     * @param list The full list, newest first
+     * @param key Gets the version of an entry, used for cursors
+     * @param isStable Decides if an entry is stable, see {@link net.flintloader.meta.database.VersionIndex}
+     * @return The entries of the page, and the cursor of the next page
+     * @throws IllegalArgumentException Thrown when the cursor is unknown
+     */
+    public <T> Page<T> apply(List<T> list, Function<T, String> key, Predicate<T> isStable) {
+        int skipped = 0;
+        boolean afterCursor = cursor == null;
+        List<T> items = new ArrayList<>(Math.min(limit, list.size()));
+
+        for (T entry : list) {
+            if (stable && !isStable.test(entry))
+                continue;
+
+            if (!afterCursor) {
+                afterCursor = key.apply(entry).equals(cursor);
+                continue;
+            }
+
+            if (skipped < offset) {
+                skipped++;
+                continue;
+            }
+
+            if (items.size() == limit) {
+                // There is at least one more entry, so there is a next page
+                return new Page<>(items, items.isEmpty() ? null : encodeCursor(key.apply(items.get(items.size() - 1))));
+            }
+
+            items.add(entry);
+        }
+
+        if (!afterCursor)
+            throw new IllegalArgumentException("Unknown cursor, the version it points to no longer exists");
+
+        return new Page<>(items, null);
+    }
+
+    /**
+     * Reduce entries to the requested fields
+     * @param items The entries to send
+     * @return The entries, or a JSON array with only the requested fields of every entry
+     */
+    public Object project(List<?> items) {
+        if (fields == null)
+            return items;
+
+        JsonArray array = new JsonArray(items.size());
+
+        for (Object item : items) {
+            JsonObject full = WebServer.GSON.toJsonTree(item).getAsJsonObject();
+            JsonObject projected = new JsonObject();
+
+            for (String field : fields) {
+                JsonElement value = full.get(field);
+
+                if (value != null)
+                    projected.add(field, value);
+            }
+
+            array.add(projected);
+        }
+
+        return array;
+    }
+
+    /**
+     * @return True when a cursor was requested, which only works on single lists
+     */
+    public boolean hasCursor() {
+        return cursor != null;
+    }
+
+    /**
+     * Add the next page headers to a response: X-Next-Cursor and a Link header with rel="next"
+     * @param ctx The request context
+     * @param page The page being sent
+     */
+    public static void writeNextPage(Context ctx, Page<?> page) {
+        if (page.getNextCursor() == null)
+            return;
+
+        StringBuilder next = new StringBuilder(ctx.path()).append('?');
+
+        ctx.queryParamMap().forEach((name, values) -> {
+            if (name.equals("offset") || name.equals("cursor"))
+                return;
+
+            for (String value : values) {
+                next.append(name).append('=').append(URLEncoder.encode(value, StandardCharsets.UTF_8)).append('&');
+            }
+        });
+
+        next.append("cursor=").append(page.getNextCursor());
+
+        ctx.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        ctx.header("Link", "<" + next + ">; rel=\"next\"");
+    }
+
+    private static int parseCount(String name, String value) {
+        try {
+            int count = Integer.parseInt(value);
+
+            if (count >= 0)
+                return count;
+        } catch (NumberFormatException ignored) {
+        }
+
+        throw new IllegalArgumentException(name + " must be zero or a positive number");
+    }
+
+    private static String encodeCursor(String version) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(version.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeCursor(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    @AllArgsConstructor
+    @Getter
+    public static class Page<T> {
+        private final List<T> items;
+        @Nullable
+        private final String nextCursor;
+    }
+}
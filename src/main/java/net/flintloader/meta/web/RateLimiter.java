@@ -0,0 +1,233 @@
+/**
+ * This file is part of flint-meta and is licensed under the MIT License
+ */
+package net.flintloader.meta.web;
+
+import io.javalin.http.Context;
+import io.javalin.http.Header;
+import net.flintloader.meta.metrics.Metrics;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author HypherionSA
+ * Token bucket rate limiting per client and route class. Clients are identified by their API key when they send a known one,
+ * and by their IP address otherwise. Buckets are spread over independently locked stripes, so requests from different
+ * clients rarely wait on each other. Every stripe holds a bounded number of buckets, and buckets that have refilled
+ * completely are dropped, since a full bucket is the same as no bucket
+ */
+public class RateLimiter {
+
+    public static final String API_KEY_HEADER = "X-API-Key";
+
+    private static final int STRIPES = 64;
+
+    private final Limit defaultLimit;
+    private final Limit loaderLimit;
+    private final Set<String> apiKeys;
+    private final double keyMultiplier;
+    private final boolean trustForwardedFor;
+    private final int maxBucketsPerStripe;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    /**
+     * @param defaultLimit The limit of the versions endpoints
+     * @param loaderLimit The limit of the loader endpoints for a game version, which need the launcher meta of the loaders
+     * @param apiKeys The known API keys
+     * @param keyMultiplier How many times the limits clients with an API key get
+     * @param trustForwardedFor Identify clients by the last X-Forwarded-For address, when running behind a proxy
+     * @param maxBuckets The maximum number of buckets to keep
+     */
+    public RateLimiter(Limit defaultLimit, Limit loaderLimit, Set<String> apiKeys, double keyMultiplier, boolean trustForwardedFor, int maxBuckets) {
+        this.defaultLimit = defaultLimit;
+        this.loaderLimit = loaderLimit;
+        this.apiKeys = apiKeys;
+        this.keyMultiplier = keyMultiplier;
+        this.trustForwardedFor = trustForwardedFor;
+        this.maxBucketsPerStripe = Math.max(1, maxBuckets / STRIPES);
+
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Before handler for the rate limited routes
+     * @param ctx The request context
+     * @throws LimitExceeded Thrown when the client has no tokens left. Stops the request before it reaches the route
+     */
+    public void handle(Context ctx) {
+        Limit limit = isLoaderRoute(ctx.path()) ? loaderLimit : defaultLimit;
+
+        if (limit.isDisabled())
+            return;
+
+        String client;
+        double multiplier = 1;
+        String key = ctx.header(API_KEY_HEADER);
+
+        if (key != null && apiKeys.contains(key)) {
+            client = "key:" + key;
+            multiplier = keyMultiplier;
+        } else {
+            client = "ip:" + clientIp(ctx);
+        }
+
+        long wait = acquire(limit.name + "|" + client, limit, multiplier, System.nanoTime());
+
+        if (wait > 0) {
+            Metrics.RATE_LIMITED.inc(limit.name);
+            throw new LimitExceeded(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + TimeUnit.SECONDS.toNanos(1) - 1)));
+        }
+    }
+
+    /**
+     * Send the 429 response of a request that was refused
+     */
+    public static void respond(LimitExceeded e, Context ctx) {
+        ctx.status(429)
+                .header(Header.RETRY_AFTER, Long.toString(e.retryAfter))
+                .result("Too many requests, retry in " + e.retryAfter + (e.retryAfter == 1 ? " second" : " seconds"));
+    }
+
+    /**
+     * Take a token from a bucket
+     * @param key The bucket
+     * @param limit The limit of the bucket
+     * @param multiplier Multiplier for the rate and burst of the limit
+     * @param now The current time, from {@link System#nanoTime()}
+     * @return 0 when a token was taken, or the time until the next token is available, in nanoseconds
+     */
+    long acquire(String key, Limit limit, double multiplier, long now) {
+        double perNano = limit.perMinute * multiplier / TimeUnit.MINUTES.toNanos(1);
+        double burst = limit.burst * multiplier;
+        Stripe stripe = stripes[(key.hashCode() & 0x7fffffff) % STRIPES];
+
+        synchronized (stripe) {
+            stripe.evictIdle(now);
+
+            Bucket bucket = stripe.get(key);
+            if (bucket == null) {
+                bucket = new Bucket(burst, now);
+                stripe.put(key, bucket);
+            }
+
+            bucket.tokens = Math.min(burst, bucket.tokens + (now - bucket.updated) * perNano);
+            bucket.updated = now;
+
+            long wait = 0;
+            if (bucket.tokens >= 1) {
+                bucket.tokens -= 1;
+            } else {
+                wait = (long) Math.ceil((1 - bucket.tokens) / perNano);
+            }
+
+            bucket.fullAt = now + (long) ((burst - bucket.tokens) / perNano);
+            return wait;
+        }
+    }
+
+    /**
+     * The loader endpoints for a game version build the loader info of every loader, which can fetch launcher meta
+     */
+    private static boolean isLoaderRoute(String path) {
+        return path.startsWith("/v1/versions/loader/") && !path.equals("/v1/versions/loader/latest");
+    }
+
+    private String clientIp(Context ctx) {
+        if (trustForwardedFor) {
+            String forwardedFor = ctx.header("X-Forwarded-For");
+
+            // The proxy appends the address it received the request from, everything before that is sent by the client
+            if (forwardedFor != null && !forwardedFor.isBlank()) {
+                return forwardedFor.substring(forwardedFor.lastIndexOf(',') + 1).trim();
+            }
+        }
+
+        return ctx.ip();
+    }
+
+    /**
+     * A rate limit for a class of routes
+     */
+    public static class Limit {
+        private final String name;
+        private final double perMinute;
+        private final double burst;
+
+        /**
+         * @param name The name of the route class, used as the label of the rate limit metrics
+         * @param perMinute The requests per minute a client can make. 0 disables the limit
+         * @param burst The requests a client can make at once
+         */
+        public Limit(String name, double perMinute, double burst) {
+            this.name = name;
+            this.perMinute = perMinute;
+            this.burst = Math.max(1, burst);
+        }
+
+        boolean isDisabled() {
+            return perMinute <= 0;
+        }
+    }
+
+    /**
+     * Thrown by the before handler to refuse a request
+     */
+    public static class LimitExceeded extends RuntimeException {
+        private final long retryAfter;
+
+        LimitExceeded(long retryAfter) {
+            // Refused requests can be frequent, so no stack trace is filled in
+            super("Too many requests", null, false, false);
+            this.retryAfter = retryAfter;
+        }
+    }
+
+    private static class Bucket {
+        double tokens;
+        long updated;
+        // When the bucket is full again, and can be dropped
+        long fullAt;
+
+        Bucket(double tokens, long now) {
+            this.tokens = tokens;
+            this.updated = now;
+            this.fullAt = now;
+        }
+    }
+
+    /**
+     * Buckets in the order they were last used, so the least recently used buckets are dropped first
+     */
+    private class Stripe extends LinkedHashMap<String, Bucket> {
+        Stripe() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+            return size() > maxBucketsPerStripe;
+        }
+
+        /**
+         * Drop buckets from the least recently used end while they have refilled completely
+         */
+        void evictIdle(long now) {
+            Iterator<Bucket> iterator = values().iterator();
+
+            while (iterator.hasNext()) {
+                Bucket bucket = iterator.next();
+
+                if (bucket.fullAt - now > 0)
+                    return;
+
+                iterator.remove();
+            }
+        }
+    }
+}
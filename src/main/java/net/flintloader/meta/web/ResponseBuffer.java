@@ -0,0 +1,90 @@
+/**
+ * This file is part of flint-meta and is licensed under the MIT License
+ */
+package net.flintloader.meta.web;
+
+import com.google.gson.Gson;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * @author HypherionSA
+ * A reusable buffer that responses are serialized into, without building a String first.
+ * Buffers are pooled, so busy nodes don't allocate a new body for every request.
+ * Closing the buffer returns it to the pool
+ */
+public class ResponseBuffer extends ByteArrayOutputStream {
+
+    private static final int POOL_SIZE = 64;
+    private static final int INITIAL_SIZE = 16 * 1024;
+    // Larger buffers are dropped after use, so one huge response doesn't stay on the heap forever
+    private static final int MAX_RETAINED_SIZE = 1024 * 1024;
+
+    private static final ArrayBlockingQueue<ResponseBuffer> POOL = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    private final Writer writer = new OutputStreamWriter(this, StandardCharsets.UTF_8);
+
+    private ResponseBuffer() {
+        super(INITIAL_SIZE);
+    }
+
+    /**
+     * @return An empty buffer from the pool, or a new one when the pool is empty
+     */
+    public static ResponseBuffer acquire() {
+        ResponseBuffer buffer = POOL.poll();
+        return buffer != null ? buffer : new ResponseBuffer();
+    }
+
+    /**
+     * Serialize an object into the buffer
+     * @param gson The Gson instance to serialize with
+     * @param object The object to serialize
+     * @return This buffer
+     */
+    public ResponseBuffer json(Gson gson, Object object) {
+        try {
+            gson.toJson(object, writer);
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return this;
+    }
+
+    /**
+     * Encode an object into the buffer as CBOR
+     * @param gson The Gson instance that turns the object into a JSON tree
+     * @param object The object to encode
+     * @return This buffer
+     */
+    public ResponseBuffer cbor(Gson gson, Object object) {
+        CborEncoder.encode(gson.toJsonTree(object), this);
+        return this;
+    }
+
+    /**
+     * @return The backing array. Only the first {@link #size()} bytes are valid
+     */
+    public byte[] array() {
+        return buf;
+    }
+
+    /**
+     * Return the buffer to the pool. It must not be used afterwards
+     */
+    @Override
+    public void close() {
+        reset();
+
+        if (buf.length <= MAX_RETAINED_SIZE)
+            POOL.offer(this);
+    }
+}
@@ -0,0 +1,420 @@
+/**
+ * This file is part of flint-meta and is licensed under the MIT License
+ */
+package net.flintloader.meta.web;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import net.flintloader.meta.database.DatabaseSnapshot;
+import net.flintloader.meta.database.VersionIndex;
+import net.flintloader.meta.database.VersionOrder;
+import net.flintloader.meta.models.*;
+import net.flintloader.meta.utils.CompressionUtils;
+import net.flintloader.meta.utils.ProfileUtils;
+import net.flintloader.meta.web.routes.v1.VersionsRoute;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static net.flintloader.meta.FlintMeta.LOGGER;
+import static net.flintloader.meta.FlintMeta.launcherMetaCache;
+
+/**
+ * @author HypherionSA
+ * Writes every response of the versions endpoints that doesn't depend on query parameters to a directory, so a CDN or nginx
+ * can serve them as plain files. Every endpoint path becomes a directory with an index.json, and gzip and brotli siblings
+ * for bodies large enough to compress. Files are only rewritten when their content changed, through a rename, so the
+ * web server never sees half written files. Entries removed from the database are removed from the directory as well
+ */
+public class StaticExporter {
+
+    private static final String INDEX = "index.json";
+    private static final String GZIP = INDEX + ".gz";
+    private static final String BROTLI = INDEX + ".br";
+    private static final String ZIP = "index.zip";
+    private static final String LATEST = "latest";
+    private static final Set<String> INDEX_FILES = Set.of(INDEX, GZIP, BROTLI);
+
+    private final Path root;
+    @Nullable
+    private DatabaseSnapshot exported;
+
+    // Counts of the running export. Guarded by this
+    private int rewritten;
+    private int unchanged;
+    private int removed;
+    // Set when files were kept from the last export, because launcher meta they need failed to load
+    private boolean incomplete;
+
+    /**
+     * @param directory The directory to export to. The endpoints are written to v1/versions inside it
+     */
+    public StaticExporter(Path directory) {
+        this.root = directory;
+    }
+
+    /**
+     * Export a generation. Does nothing when the generation was already exported
+     * @param snapshot The generation to export
+     * @return False when some loader files were kept from the last export, because their launcher meta failed to load.
+     *         The generation is not marked as exported, so the next call tries again
+     * @throws IOException Thrown when a file could not be written. Files written so far are kept
+     */
+    public synchronized boolean export(DatabaseSnapshot snapshot) throws IOException {
+        if (snapshot == exported)
+            return true;
+
+        long start = System.currentTimeMillis();
+        rewritten = 0;
+        unchanged = 0;
+        removed = 0;
+        incomplete = false;
+
+        VersionIndex index = snapshot.getIndex();
+        AllVersions versions = snapshot.getVersions();
+        // New profiles get the time of the generation. Existing profiles keep their time, so they are only rewritten when they change
+        ZonedDateTime profileTime = Instant.ofEpochMilli(snapshot.getGeneratedAt()).atZone(ZoneId.systemDefault());
+        Path dir = root.resolve("v1").resolve("versions");
+
+        writeResponse(dir, snapshot.getAll());
+        writeList(dir.resolve("game"), snapshot, "game", snapshot.getGame(), List.of());
+        writeList(dir.resolve("installer"), snapshot, "installer", snapshot.getInstallers(), List.of());
+
+        // Loaders for every game version that has intermediary mappings, the same check the loader routes make
+        List<String> loaderGames = names(versions.getIntermediary(), IntermediaryVersion::getVersion);
+        writeList(dir.resolve("loader"), snapshot, "loader", snapshot.getLoaders(), loaderGames);
+        for (String game : loaderGames) {
+            writeLoaders(dir.resolve("loader").resolve(game), versions.getLoaders(), index.getIntermediary(game), index, profileTime);
+        }
+
+        List<String> yarnGames = names(versions.getMappings(), YarnVersion::getGameVersion);
+        writeList(dir.resolve("yarn"), snapshot, "yarn", snapshot.getMappings(), yarnGames);
+        for (String game : yarnGames) {
+            Path gameDir = dir.resolve("yarn").resolve(game);
+            writeJson(gameDir, index.getMappingsFor(game));
+            writeJson(gameDir.resolve(LATEST), index.getLatestMappings(game));
+            sweep(gameDir, List.of(LATEST));
+        }
+
+        writeList(dir.resolve("intermediary"), snapshot, "intermediary", snapshot.getIntermediary(), loaderGames);
+        for (String game : loaderGames) {
+            Path gameDir = dir.resolve("intermediary").resolve(game);
+            writeJson(gameDir, index.getIntermediaryFor(game));
+            sweep(gameDir, List.of());
+        }
+
+        List<String> apiGames = names(versions.getApi(), ApiVersion::getMinecraft);
+        writeList(dir.resolve("api"), snapshot, "api", snapshot.getApi(), apiGames);
+        for (String game : apiGames) {
+            writeApi(dir.resolve("api").resolve(game), game, index);
+        }
+
+        sweep(dir, List.of("game", "installer", "loader", "yarn", "intermediary", "api"));
+
+        if (incomplete) {
+            LOGGER.warn("Exported generation {} to {} without some loaders, their launcher meta failed to load: {} files rewritten, {} unchanged, {} removed ({} ms)",
+                    snapshot.getGeneration(), root, rewritten, unchanged, removed, System.currentTimeMillis() - start);
+            return false;
+        }
+
+        exported = snapshot;
+        LOGGER.info("Exported generation {} to {}: {} files rewritten, {} unchanged, {} removed ({} ms)",
+                snapshot.getGeneration(), root, rewritten, unchanged, removed, System.currentTimeMillis() - start);
+        return true;
+    }
+
+    /**
+     * Write a full list, its newest entry, and remove game versions that are gone
+     */
+    private void writeList(Path dir, DatabaseSnapshot snapshot, String list, CachedResponse response, List<String> games) throws IOException {
+        writeResponse(dir, response);
+
+        CachedResponse latest = snapshot.getLatest(list, false);
+        if (latest != null) {
+            writeResponse(dir.resolve(LATEST), latest);
+        }
+
+        List<String> children = new ArrayList<>(games);
+        children.add(LATEST);
+        sweep(dir, children);
+    }
+
+    /**
+     * Write the loader list of a game version, and the loader info and profiles of every loader.
+     * Files that need launcher meta that failed to load are left as they are, the same check the loader list route makes before caching
+     */
+    private void writeLoaders(Path dir, List<LoaderVersion> loaders, IntermediaryVersion mapping, VersionIndex index, ZonedDateTime profileTime) throws IOException {
+        List<LoaderInfo> infos = new ArrayList<>(loaders.size());
+        List<String> children = new ArrayList<>();
+        children.add(LATEST);
+        boolean complete = true;
+
+        for (LoaderVersion loader : loaders) {
+            LoaderInfo info = VersionsRoute.buildLoaderInfo(loader, mapping);
+            boolean known = launcherMetaCache.isKnown(loader.getMaven());
+            infos.add(info);
+            complete &= known;
+
+            if (!isSafeName(loader.getVersion()))
+                continue;
+
+            Path loaderDir = dir.resolve(loader.getVersion());
+            children.add(loader.getVersion());
+
+            if (!known)
+                continue;
+
+            writeJson(loaderDir, info);
+
+            // Without launcher meta there is no profile, the profile routes fail the same way
+            if (info.getLauncherMeta().has("libraries")) {
+                writeProfiles(loaderDir, info, profileTime);
+            }
+        }
+
+        if (complete) {
+            writeJson(dir, infos);
+        }
+
+        LoaderVersion latest = index.getLatestLoader(false);
+        if (latest != null) {
+            LoaderInfo info = VersionsRoute.buildLoaderInfo(latest, mapping);
+
+            if (launcherMetaCache.isKnown(latest.getMaven())) {
+                writeJson(dir.resolve(LATEST), info);
+            } else {
+                complete = false;
+            }
+        }
+
+        incomplete |= !complete;
+        sweep(dir, children);
+    }
+
+    private void writeProfiles(Path dir, LoaderInfo info, ZonedDateTime profileTime) throws IOException {
+        Path clientDir = dir.resolve("profile").resolve("json");
+        ZonedDateTime clientTime = profileTime(clientDir, profileTime);
+        byte[] client = render(ProfileUtils.buildProfileJson(info, "client", clientTime));
+        writeJson(clientDir, client);
+
+        String profileName = ProfileUtils.getProfileName(info.getLoader().getVersion(), info.getIntermediary().getVersion());
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        ProfileUtils.writeProfileZip(profileName, client, clientTime.toInstant().toEpochMilli(), zip);
+        writeFile(dir.resolve("profile").resolve("zip"), ZIP, zip.toByteArray());
+
+        Path serverDir = dir.resolve("server").resolve("json");
+        writeJson(serverDir, render(ProfileUtils.buildProfileJson(info, "server", profileTime(serverDir, profileTime))));
+    }
+
+    /**
+     * Write the api versions of a game version, its newest api version, and every single api version
+     */
+    private void writeApi(Path dir, String game, VersionIndex index) throws IOException {
+        List<ApiVersion> api = index.getApiFor(game);
+        List<String> children = new ArrayList<>();
+        children.add(LATEST);
+
+        writeJson(dir, api);
+        writeJson(dir.resolve(LATEST), index.getLatestApi(game, false));
+
+        for (String version : names(api, entry -> VersionOrder.apiPart(entry.getVersion(), game))) {
+            List<ApiVersion> matches = index.getApiFor(game, version);
+
+            if (!matches.isEmpty()) {
+                children.add(version);
+                writeJson(dir.resolve(version), matches);
+            }
+        }
+
+        sweep(dir, children);
+    }
+
+    /**
+     * Write a pre-rendered response with its pre-compressed variants
+     */
+    private void writeResponse(Path dir, CachedResponse response) throws IOException {
+        CachedResponse.Representation json = response.getJson();
+
+        writeFile(dir, INDEX, json.getIdentity().getBody());
+        writeVariant(dir, GZIP, json.getGzip());
+        writeVariant(dir, BROTLI, json.getBrotli());
+    }
+
+    private void writeVariant(Path dir, String name, @Nullable CachedResponse.Variant variant) throws IOException {
+        if (variant != null) {
+            writeFile(dir, name, variant.getBody());
+        } else {
+            delete(dir.resolve(name));
+        }
+    }
+
+    /**
+     * Serialize an object and write it, compressing it only when it changed
+     */
+    private void writeJson(Path dir, @Nullable Object object) throws IOException {
+        if (object == null)
+            return;
+
+        writeJson(dir, render(object));
+    }
+
+    private void writeJson(Path dir, byte[] body) throws IOException {
+        boolean changed = writeFile(dir, INDEX, body);
+
+        if (body.length < CompressionUtils.MIN_SIZE) {
+            delete(dir.resolve(GZIP));
+            delete(dir.resolve(BROTLI));
+            return;
+        }
+
+        // Siblings are compressed at fast levels, a generation can change thousands of these at once
+        if (changed || !Files.exists(dir.resolve(GZIP))) {
+            writeFile(dir, GZIP, CompressionUtils.gzip(body, true));
+        }
+
+        if (changed || !Files.exists(dir.resolve(BROTLI))) {
+            byte[] brotli = CompressionUtils.brotli(body, true);
+
+            if (brotli != null) {
+                writeFile(dir, BROTLI, brotli);
+            } else {
+                delete(dir.resolve(BROTLI));
+            }
+        }
+    }
+
+    private static byte[] render(Object object) {
+        try (ResponseBuffer buffer = ResponseBuffer.acquire().json(WebServer.GSON, object)) {
+            return buffer.toByteArray();
+        }
+    }
+
+    /**
+     * Write a file, unless it already has the same content
+     * @return True when the file was written
+     */
+    private boolean writeFile(Path dir, String name, byte[] body) throws IOException {
+        Path file = dir.resolve(name);
+
+        if (Files.isRegularFile(file) && Files.size(file) == body.length && Arrays.equals(Files.readAllBytes(file), body)) {
+            unchanged++;
+            return false;
+        }
+
+        Files.createDirectories(dir);
+
+        // Not a temp file from createTempFile, those are only readable by the owner
+        Path temp = dir.resolve("." + name + ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                out.write(body);
+            }
+
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        rewritten++;
+        return true;
+    }
+
+    /**
+     * Get the time of a profile that was exported before
+     * @param dir The directory of the profile
+     * @param fallback The time to use for new profiles
+     * @return The time of the existing profile, or the fallback
+     */
+    private static ZonedDateTime profileTime(Path dir, ZonedDateTime fallback) {
+        Path file = dir.resolve(INDEX);
+
+        if (!Files.isRegularFile(file))
+            return fallback;
+
+        try {
+            JsonElement time = JsonParser.parseString(Files.readString(file, StandardCharsets.UTF_8)).getAsJsonObject().get("time");
+            return time == null ? fallback : ZonedDateTime.parse(time.getAsString(), ProfileUtils.ISO_8601);
+        } catch (Exception e) {
+            return fallback;
+        }
+    }
+
+    /**
+     * Remove everything from a directory that is not part of the export anymore
+     * @param dir The directory
+     * @param children The subdirectories that were exported. Index files are always kept
+     */
+    private void sweep(Path dir, Collection<String> children) throws IOException {
+        if (!Files.isDirectory(dir))
+            return;
+
+        Set<String> keep = new HashSet<>(children);
+        List<Path> stale = new ArrayList<>();
+
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            for (Path entry : entries) {
+                String name = entry.getFileName().toString();
+
+                if (!INDEX_FILES.contains(name) && !keep.contains(name))
+                    stale.add(entry);
+            }
+        }
+
+        for (Path entry : stale) {
+            delete(entry);
+        }
+    }
+
+    private void delete(Path path) throws IOException {
+        if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS))
+            return;
+
+        if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+            try (Stream<Path> walk = Files.walk(path)) {
+                for (Path entry : walk.sorted(Comparator.reverseOrder()).toList()) {
+                    if (!Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS))
+                        removed++;
+
+                    Files.delete(entry);
+                }
+            }
+        } else {
+            Files.delete(path);
+            removed++;
+        }
+    }
+
+    /**
+     * Get the distinct names of a list, without names that can't be used as a directory
+     */
+    private static <T> List<String> names(List<T> list, Function<T, String> name) {
+        Set<String> names = new LinkedHashSet<>();
+
+        for (T entry : list) {
+            String value = name.apply(entry);
+
+            if (isSafeName(value))
+                names.add(value);
+        }
+
+        return new ArrayList<>(names);
+    }
+
+    /**
+     * Check if a version can be used as a directory name, without leaving its parent or clashing with exported files
+     */
+    private static boolean isSafeName(String name) {
+        return !name.isEmpty() && !name.equals(".") && !name.equals("..") && !name.startsWith(".") && !name.equals(LATEST)
+                && !INDEX_FILES.contains(name) && !name.equals(ZIP) && name.indexOf('/') < 0 && name.indexOf('\\') < 0 && name.indexOf('\0') < 0;
+    }
+}
@@ -5,16 +5,32 @@ package net.flintloader.meta.web;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParser;
 import io.javalin.Javalin;
 import io.javalin.http.Context;
+import io.javalin.http.HandlerType;
 import io.javalin.http.Header;
 import io.javalin.openapi.plugin.OpenApiPlugin;
 import io.javalin.openapi.plugin.OpenApiPluginConfiguration;
 import io.javalin.openapi.plugin.swagger.SwaggerConfiguration;
 import io.javalin.openapi.plugin.swagger.SwaggerPlugin;
-import io.javalin.plugin.bundled.CorsPluginConfig;
 import net.flintloader.meta.Constants;
+import net.flintloader.meta.FlintMeta;
+import net.flintloader.meta.metrics.Metrics;
+import net.flintloader.meta.utils.CompressionUtils;
+import net.flintloader.meta.web.routes.AdminRoute;
+import net.flintloader.meta.web.routes.ReplicationRoute;
 import net.flintloader.meta.web.routes.v1.VersionsRoute;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * @author HypherionSA
@@ -23,7 +39,9 @@ import net.flintloader.meta.web.routes.v1.VersionsRoute;
 public class WebServer {
 
     public static Javalin javalin;
-    public static Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    public static Gson GSON = new Gson();
+    // Only used when a client asks for it with ?pretty
+    public static Gson PRETTY_GSON = new GsonBuilder().setPrettyPrinting().create();
 
     public static Javalin create() {
         if (javalin != null)
@@ -31,23 +49,71 @@ public class WebServer {
 
         javalin = Javalin.create(config -> {
             config.showJavalinBanner = false;
-            config.plugins.enableCors(cors -> cors.add(CorsPluginConfig::anyHost));
+            // Javalin compresses whenever Accept-Encoding mentions gzip or br, even with q=0. Responses pick their encoding themselves
+            config.compression.none();
+            config.plugins.enableCors(cors -> cors.add(rule -> {
+                rule.anyHost();
+                rule.exposeHeader(VersionsRoute.GENERATION_HEADER);
+                rule.exposeHeader(ListQuery.NEXT_CURSOR_HEADER);
+                rule.exposeHeader("Link");
+                rule.exposeHeader(Header.RETRY_AFTER);
+            }));
             config.plugins.register(buildOpenApi());
 
             SwaggerConfiguration swaggerConfiguration = new SwaggerConfiguration();
             config.plugins.register(new SwaggerPlugin(swaggerConfiguration));
+            config.requestLogger.http(WebServer::recordRequest);
         });
 
+        javalin.before("/v1/*", WebServer::requireSnapshot);
+        javalin.exception(NotReady.class, (e, ctx) -> ctx.status(503)
+                .header(Header.RETRY_AFTER, Long.toString(Constants.REPLICATION_INTERVAL_SECONDS))
+                .result("No versions loaded yet, retry in " + Constants.REPLICATION_INTERVAL_SECONDS + " seconds"));
+
+        RateLimiter rateLimiter = createRateLimiter();
+        javalin.before("/v1/*", rateLimiter::handle);
+        javalin.exception(RateLimiter.LimitExceeded.class, RateLimiter::respond);
+
         javalin.get("/", (ctx) -> ctx.redirect("/swagger"));
+        javalin.get("/metrics", (ctx) -> ctx.contentType("text/plain; version=0.0.4; charset=utf-8").result(Metrics.scrape()));
 
         new VersionsRoute();
+        new AdminRoute();
+        new ReplicationRoute();
 
         return javalin;
     }
 
+    /**
+     * Before handler that refuses API requests until the first generation is loaded. Only followers start without one,
+     * when they have nothing stored and the leader can't be reached
+     * @throws NotReady Thrown when there is no generation to serve
+     */
+    private static void requireSnapshot(Context ctx) {
+        if (!FlintMeta.versionsDatabase.isReady())
+            throw new NotReady();
+    }
+
+    private static RateLimiter createRateLimiter() {
+        Set<String> keys = new HashSet<>();
+
+        for (String key : Constants.RATE_LIMIT_KEYS.split(",")) {
+            if (!key.isBlank())
+                keys.add(key.trim());
+        }
+
+        return new RateLimiter(
+                new RateLimiter.Limit("default", Constants.RATE_LIMIT, Constants.RATE_LIMIT_BURST),
+                new RateLimiter.Limit("loader", Constants.LOADER_RATE_LIMIT, Constants.LOADER_RATE_LIMIT_BURST),
+                keys,
+                Constants.RATE_LIMIT_KEY_MULTIPLIER,
+                Constants.RATE_LIMIT_FORWARDED_FOR,
+                Constants.RATE_LIMIT_CLIENTS);
+    }
+
     public static void start() {
         assert javalin == null;
-        create().start(5806);
+        create().start(Constants.PORT);
     }
 
     /**
@@ -60,11 +126,185 @@ public class WebServer {
             ctx.status(400);
         }
 
-        String response = GSON.toJson(object);
-        ctx.contentType("application/json").header(Header.CACHE_CONTROL, "public, max-age=60").result(response);
+        boolean cbor = CachedResponse.isCborAccepted(ctx.header(Header.ACCEPT));
+        ctx.contentType(cbor ? CborEncoder.CONTENT_TYPE : "application/json")
+                .header(Header.CACHE_CONTROL, "public, max-age=60")
+                .header(Header.VARY, Header.ACCEPT + ", " + Header.ACCEPT_ENCODING);
+
+        // The body is serialized straight into a pooled buffer, so the ETag is known before anything is sent
+        ResponseBuffer buffer = ResponseBuffer.acquire();
+        try (ResponseBuffer response = cbor ? buffer.cbor(GSON, object) : buffer.json(isPretty(ctx) ? PRETTY_GSON : GSON, object)) {
+            String encoding = response.size() < CompressionUtils.MIN_SIZE ? null
+                    : CachedResponse.selectEncoding(ctx.header(Header.ACCEPT_ENCODING), CompressionUtils.isBrotliAvailable());
+
+            String etag = null;
+
+            if (ctx.statusCode() == 200) {
+                etag = CachedResponse.etag(response.array(), response.size());
+                String sent = encoding == null ? etag : CachedResponse.variantEtag(etag, encoding);
+                ctx.header(Header.ETAG, sent);
+
+                if (matchesEtag(ctx.header(Header.IF_NONE_MATCH), sent)) {
+                    ctx.status(304);
+                    return;
+                }
+            }
+
+            if (encoding == null) {
+                Metrics.RESPONSE_SIZE.observe(response.size(), routeLabel(ctx));
+                ctx.outputStream().write(response.array(), 0, response.size());
+                return;
+            }
+
+            byte[] body = encoding.equals("br") ? CompressionUtils.brotli(response.toByteArray(), true) : null;
+
+            if (body == null) {
+                encoding = "gzip";
+                body = CompressionUtils.gzip(response.toByteArray(), true);
+
+                if (etag != null)
+                    ctx.header(Header.ETAG, CachedResponse.variantEtag(etag, encoding));
+            }
+
+            ctx.header(Header.CONTENT_ENCODING, encoding);
+            Metrics.RESPONSE_SIZE.observe(body.length, routeLabel(ctx));
+            ctx.outputStream().write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
     // End apache-2.0 code
 
+    /**
+     * Write a pre-rendered response, without serializing anything.
+     * The format is picked based on Accept and the pre-compressed variant based on Accept-Encoding, and a 304 is sent
+     * when the client already has the current version
+     * @param ctx The request context
+     * @param response The cached response to send
+     */
+    public static void cachedResponse(Context ctx, CachedResponse response) {
+        CachedResponse.Variant variant = response.select(ctx.header(Header.ACCEPT), ctx.header(Header.ACCEPT_ENCODING));
+
+        if (isPretty(ctx) && variant.getContentType().equals("application/json")) {
+            // Rare enough to re-indent the compact body on every request
+            jsonResponse(ctx, JsonParser.parseString(new String(response.getBody(), StandardCharsets.UTF_8)));
+            return;
+        }
+
+        ctx.contentType(variant.getContentType())
+                .header(Header.CACHE_CONTROL, "public, max-age=60")
+                .header(Header.VARY, Header.ACCEPT + ", " + Header.ACCEPT_ENCODING)
+                .header(Header.ETAG, variant.getEtag())
+                .header(Header.LAST_MODIFIED, response.getLastModifiedHeader());
+
+        if (isNotModified(ctx, variant.getEtag(), response.getLastModified())) {
+            ctx.status(304);
+            return;
+        }
+
+        if (variant.getEncoding() != null) {
+            ctx.header(Header.CONTENT_ENCODING, variant.getEncoding());
+        }
+
+        Metrics.RESPONSE_SIZE.observe(variant.getBody().length, routeLabel(ctx));
+        ctx.result(variant.getBody());
+    }
+
+    /**
+     * @return True when the client asked for indented JSON with ?pretty or ?pretty=true
+     */
+    private static boolean isPretty(Context ctx) {
+        String pretty = ctx.queryParam("pretty");
+        return pretty != null && !pretty.equalsIgnoreCase("false");
+    }
+
+    /**
+     * Record the latency and status of a request. Only the API routes are recorded,
+     * and unknown paths are recorded under one label, so they can't create new label values
+     */
+    private static void recordRequest(Context ctx, Float executionTimeMs) {
+        if (!ctx.path().startsWith("/v1/"))
+            return;
+
+        String route = routeLabel(ctx);
+        Metrics.REQUEST_DURATION.observe(executionTimeMs / 1000D, route);
+        Metrics.REQUESTS.inc(route, Integer.toString(ctx.statusCode()));
+    }
+
+    /**
+     * Get the route label of a request. Javalin refuses to give the endpoint path while the request is still
+     * in a before handler, and otherwise gives the path of the before handler or a message when no route handled the request
+     * @return The endpoint path of the route, or a fixed label when no route handled the request
+     */
+    private static String routeLabel(Context ctx) {
+        String route = ctx.handlerType() == HandlerType.BEFORE ? "" : ctx.endpointHandlerPath();
+
+        if (route.startsWith("/v1/") && !route.contains("*"))
+            return route;
+
+        return switch (ctx.statusCode()) {
+            case 429 -> "rate_limited";
+            case 503 -> "not_ready";
+            default -> "unmatched";
+        };
+    }
+
+    /**
+     * Check the conditional request headers against a cached response.
+     * If-None-Match takes precedence over If-Modified-Since, as required by RFC 9110
+     */
+    private static boolean isNotModified(Context ctx, String etag, long lastModified) {
+        String ifNoneMatch = ctx.header(Header.IF_NONE_MATCH);
+
+        if (ifNoneMatch != null) {
+            return matchesEtag(ifNoneMatch, etag);
+        }
+
+        String ifModifiedSince = ctx.header(Header.IF_MODIFIED_SINCE);
+
+        if (ifModifiedSince == null)
+            return false;
+
+        try {
+            long since = ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return lastModified <= since;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param ifNoneMatch The If-None-Match request header
+     * @param etag The ETag of the current response
+     * @return True when the client already has the current response
+     */
+    public static boolean matchesEtag(@Nullable String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null)
+            return false;
+
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+
+            // Weak comparison is used for If-None-Match, so W/ prefixes added by proxies still match
+            if (candidate.startsWith("W/"))
+                candidate = candidate.substring(2);
+
+            if (candidate.equals("*") || candidate.equals(etag))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Thrown by the before handler to refuse requests while no generation is loaded
+     */
+    private static class NotReady extends RuntimeException {
+        NotReady() {
+            super("No versions loaded yet", null, false, false);
+        }
+    }
+
     private static OpenApiPlugin buildOpenApi() {
         return new OpenApiPlugin(
                 new OpenApiPluginConfiguration()
@@ -0,0 +1,123 @@
+/**
+ * This file is part of flint-meta and is licensed under the MIT License
+ */
+package net.flintloader.meta.web.routes;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import io.javalin.http.Context;
+import io.javalin.http.Header;
+import net.flintloader.meta.Constants;
+import net.flintloader.meta.database.VersionsDatabase;
+import net.flintloader.meta.web.WebServer;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.*;
+
+import static io.javalin.apibuilder.ApiBuilder.path;
+import static io.javalin.apibuilder.ApiBuilder.post;
+import static net.flintloader.meta.FlintMeta.refreshScheduler;
+
+/**
+ * @author HypherionSA
+ * Authenticated endpoints for maven publish hooks. Not part of the public API, so not documented in OpenAPI
+ */
+public class AdminRoute {
+    private final String BASE_PATH = "/admin";
+
+    public AdminRoute() {
+        register();
+    }
+
+    private void register() {
+        WebServer.javalin.routes(() -> path(BASE_PATH, () -> {
+            post("/refresh", this::refresh);
+        }));
+    }
+
+    /**
+     * Request an update of the sources a publish affects. The artifacts are read from artifact query parameters,
+     * or from the artifact, artifacts or path fields of a JSON body, where path is the maven path of the published file.
+     * Without any artifacts, every source is updated
+     */
+    private void refresh(Context ctx) {
+        if (Constants.ADMIN_TOKEN == null) {
+            ctx.status(404);
+            return;
+        }
+
+        if (!isAuthorized(ctx.header(Header.AUTHORIZATION))) {
+            ctx.status(401).header(Header.WWW_AUTHENTICATE, "Bearer");
+            return;
+        }
+
+        List<String> artifacts = new ArrayList<>(ctx.queryParams("artifact"));
+
+        try {
+            readArtifacts(ctx.body(), artifacts);
+        } catch (JsonParseException | IllegalStateException e) {
+            ctx.status(400).result("Invalid JSON body");
+            return;
+        }
+
+        Set<String> sources = new TreeSet<>();
+        for (String artifact : artifacts) {
+            String source = VersionsDatabase.sourceOf(artifact);
+
+            if (source != null)
+                sources.add(source);
+        }
+
+        if (!artifacts.isEmpty() && sources.isEmpty()) {
+            // Publishes of unrelated artifacts don't need an update
+            ctx.status(204);
+            return;
+        }
+
+        if (sources.isEmpty())
+            sources.addAll(VersionsDatabase.SOURCES);
+
+        refreshScheduler.request(sources);
+
+        JsonObject response = new JsonObject();
+        response.add("sources", WebServer.GSON.toJsonTree(sources));
+        ctx.status(202).contentType("application/json").result(WebServer.GSON.toJson(response));
+    }
+
+    private static void readArtifacts(String body, List<String> artifacts) {
+        if (body.isBlank())
+            return;
+
+        JsonObject json = JsonParser.parseString(body).getAsJsonObject();
+
+        if (json.has("artifact"))
+            artifacts.add(json.get("artifact").getAsString());
+
+        if (json.has("artifacts")) {
+            for (JsonElement artifact : json.getAsJsonArray("artifacts")) {
+                artifacts.add(artifact.getAsString());
+            }
+        }
+
+        if (json.has("path")) {
+            // Any segment of the path can be the artifact, for example releases/net/flintloader/punch/1.0.0/punch-1.0.0.jar
+            for (String segment : json.get("path").getAsString().split("/")) {
+                if (VersionsDatabase.sourceOf(segment) != null)
+                    artifacts.add(segment);
+            }
+        }
+    }
+
+    private static boolean isAuthorized(String header) {
+        if (header == null || !header.startsWith("Bearer "))
+            return false;
+
+        // Constant time comparison, so the token can't be guessed from response times
+        byte[] expected = Constants.ADMIN_TOKEN.getBytes(StandardCharsets.UTF_8);
+        byte[] actual = header.substring("Bearer ".length()).trim().getBytes(StandardCharsets.UTF_8);
+        return MessageDigest.isEqual(expected, actual);
+    }
+}
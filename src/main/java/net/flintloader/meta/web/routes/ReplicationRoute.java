@@ -0,0 +1,58 @@
+/**
+ * This file is part of flint-meta and is licensed under the MIT License
+ */
+package net.flintloader.meta.web.routes;
+
+import io.javalin.http.Context;
+import io.javalin.http.Header;
+import net.flintloader.meta.database.DatabaseSnapshot;
+import net.flintloader.meta.web.WebServer;
+import net.flintloader.meta.web.routes.v1.VersionsRoute;
+
+import java.io.IOException;
+
+import static net.flintloader.meta.FlintMeta.versionsDatabase;
+
+/**
+ * @author HypherionSA
+ * Serves the current generation to follower nodes, in the same format as the database file on disk.
+ * Not part of the public API, so not documented in OpenAPI
+ */
+public class ReplicationRoute {
+    public static final String SNAPSHOT_PATH = "/replication/snapshot";
+
+    public ReplicationRoute() {
+        register();
+    }
+
+    private void register() {
+        WebServer.javalin.get(SNAPSHOT_PATH, this::getSnapshot);
+    }
+
+    /**
+     * Send the whole current generation as gzipped JSON. Followers poll this with If-None-Match,
+     * so a poll without a new generation is answered with a 304
+     */
+    private void getSnapshot(Context ctx) throws IOException {
+        DatabaseSnapshot snapshot = versionsDatabase.getSnapshot();
+
+        if (snapshot == null) {
+            ctx.status(503).result("No versions loaded yet");
+            return;
+        }
+
+        String etag = snapshot.getReplicaEtag();
+
+        ctx.header(Header.ETAG, etag)
+                .header(Header.CACHE_CONTROL, "no-cache")
+                .header(VersionsRoute.GENERATION_HEADER, Long.toString(snapshot.getGeneration()));
+
+        if (WebServer.matchesEtag(ctx.header(Header.IF_NONE_MATCH), etag)) {
+            ctx.status(304);
+            return;
+        }
+
+        // Already gzipped, and decompressed by the follower itself, so no Content-Encoding is set
+        ctx.contentType("application/gzip").result(snapshot.getReplica());
+    }
+}
@@ -3,21 +3,36 @@
  */
 package net.flintloader.meta.web.routes.v1;
 
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import io.javalin.http.Context;
+import io.javalin.http.Header;
 import io.javalin.openapi.*;
-import net.flintloader.meta.Constants;
+import lombok.AllArgsConstructor;
+import net.flintloader.meta.database.DatabaseSnapshot;
+import net.flintloader.meta.database.VersionIndex;
+import net.flintloader.meta.metrics.Metrics;
 import net.flintloader.meta.models.*;
 import net.flintloader.meta.utils.ProfileUtils;
-import net.flintloader.meta.utils.RemoteJsonReader;
+import net.flintloader.meta.web.CachedResponse;
+import net.flintloader.meta.web.ListQuery;
 import net.flintloader.meta.web.WebServer;
+import org.apache.commons.io.output.TeeOutputStream;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 import static io.javalin.apibuilder.ApiBuilder.get;
 import static io.javalin.apibuilder.ApiBuilder.path;
+import static net.flintloader.meta.FlintMeta.launcherMetaCache;
+import static net.flintloader.meta.FlintMeta.profileCache;
 import static net.flintloader.meta.FlintMeta.versionsDatabase;
 
 /**
@@ -26,6 +41,8 @@ import static net.flintloader.meta.FlintMeta.versionsDatabase;
  */
 public class VersionsRoute {
     private final String BASE_PATH = "/v1/versions";
+    public static final String GENERATION_HEADER = "X-Generation";
+    private static final List<String> LATEST_LISTS = List.of("game", "loader", "yarn", "intermediary", "installer", "api");
 
     public VersionsRoute() {
         register();
@@ -33,6 +50,14 @@ public class VersionsRoute {
 
     private void register() {
         WebServer.javalin.routes(() -> path(BASE_PATH, () -> {
+            // Latest routes are registered before the routes they overlap with, since the first matching route is used
+            for (String list : LATEST_LISTS) {
+                get("/" + list + "/latest", context -> getLatest(context, list));
+            }
+            get("/loader/{gameVersion}/latest", this::getLatestLoaderForGame);
+            get("/yarn/{gameVersion}/latest", this::getLatestYarnForGame);
+            get("/api/{gameVersion}/latest", this::getLatestApiForGame);
+
             get("/", this::getAllVersions);
             get("/game", this::getGameVersions);
             get("/yarn", this::getYarnVersions);
@@ -43,10 +68,13 @@ public class VersionsRoute {
             get("/loader/{gameVersion}", this::getLoadersFiltered);
             get("/loader/{gameVersion}/{loaderVersion}", this::getSingleLoader);
             get("/loader/{gameVersion}/{loaderVersion}/profile/json", this::getLoaderJsonProfile);
+            get("/loader/{gameVersion}/{loaderVersion}/profile/zip", this::getLoaderZipProfile);
+            get("/loader/{gameVersion}/{loaderVersion}/server/json", this::getLoaderServerProfile);
             get("/installer", this::getInstallers);
             get("/api", this::getApiVersions);
             get("/api/{gameVersion}", this::getFilteredApiVersion);
             get("/api/{gameVersion}/{apiVersion}", this::getSingleApiVersion);
+            get("/changes", this::getChanges);
         }));
     }
 
@@ -79,14 +107,14 @@ public class VersionsRoute {
         String gameVersion = context.pathParam("gameVersion");
         String apiVersion = context.pathParam("apiVersion");
 
-        List<ApiVersion> filtered = versionsDatabase.getApi().stream().filter(a -> a.getMinecraft().equals(gameVersion)).toList();
+        VersionIndex index = versionsDatabase.getSnapshot().getIndex();
 
-        if (filtered.isEmpty()) {
+        if (index.getApiFor(gameVersion).isEmpty()) {
             context.result("No api version found for " + gameVersion).status(400);
             return;
         }
 
-        filtered = filtered.stream().filter(a -> a.getVersion().split("-")[1].equals(apiVersion)).toList();
+        List<ApiVersion> filtered = index.getApiFor(gameVersion, apiVersion);
 
         if (filtered.isEmpty()) {
             context.result("No api version found for " + gameVersion).status(400);
@@ -108,6 +136,13 @@ public class VersionsRoute {
                             required = true
                     )
             },
+            queryParams = {
+                    @OpenApiParam(name = "limit", description = "Only return this many entries. Lists are newest first"),
+                    @OpenApiParam(name = "offset", description = "Skip this many entries"),
+                    @OpenApiParam(name = "cursor", description = "Continue after the page that returned this X-Next-Cursor header"),
+                    @OpenApiParam(name = "stable", description = "Only return stable entries, when true"),
+                    @OpenApiParam(name = "fields", description = "Comma separated fields to include in every entry")
+            },
             responses = {
                     @OpenApiResponse(
                             status = "200",
@@ -119,14 +154,15 @@ public class VersionsRoute {
     private void getFilteredApiVersion(@NotNull Context context) {
         String gameVersion = context.pathParam("gameVersion");
 
-        List<ApiVersion> filtered = versionsDatabase.getApi().stream().filter(a -> a.getMinecraft().equals(gameVersion)).toList();
+        VersionIndex index = versionsDatabase.getSnapshot().getIndex();
+        List<ApiVersion> filtered = index.getApiFor(gameVersion);
 
         if (filtered.isEmpty()) {
             context.result("No api version found for " + gameVersion).status(400);
             return;
         }
 
-        WebServer.jsonResponse(context, filtered);
+        filteredResponse(context, filtered, ApiVersion::getVersion, index::isStableForGame);
     }
 
     @OpenApi(
@@ -134,6 +170,13 @@ public class VersionsRoute {
             methods = { HttpMethod.GET },
             description = "Lists all Flint Api versions",
             versions = "v1",
+            queryParams = {
+                    @OpenApiParam(name = "limit", description = "Only return this many entries. Lists are newest first"),
+                    @OpenApiParam(name = "offset", description = "Skip this many entries"),
+                    @OpenApiParam(name = "cursor", description = "Continue after the page that returned this X-Next-Cursor header"),
+                    @OpenApiParam(name = "stable", description = "Only return stable entries, when true"),
+                    @OpenApiParam(name = "fields", description = "Comma separated fields to include in every entry")
+            },
             responses = {
                     @OpenApiResponse(
                             status = "200",
@@ -143,7 +186,7 @@ public class VersionsRoute {
             }
     )
     private void getApiVersions(@NotNull Context context) {
-        WebServer.jsonResponse(context, versionsDatabase.getApi());
+        listResponse(context, DatabaseSnapshot::getApi, AllVersions::getApi, ApiVersion::getVersion, VersionIndex::isStable);
     }
 
     @OpenApi(
@@ -151,6 +194,13 @@ public class VersionsRoute {
             methods = { HttpMethod.GET },
             description = "Lists all Flint Installer versions",
             versions = "v1",
+            queryParams = {
+                    @OpenApiParam(name = "limit", description = "Only return this many entries. Lists are newest first"),
+                    @OpenApiParam(name = "offset", description = "Skip this many entries"),
+                    @OpenApiParam(name = "cursor", description = "Continue after the page that returned this X-Next-Cursor header"),
+                    @OpenApiParam(name = "stable", description = "Only return stable entries, when true"),
+                    @OpenApiParam(name = "fields", description = "Comma separated fields to include in every entry")
+            },
             responses = {
                     @OpenApiResponse(
                             status = "200",
@@ -160,7 +210,7 @@ public class VersionsRoute {
             }
     )
     private void getInstallers(@NotNull Context context) {
-        WebServer.jsonResponse(context, versionsDatabase.getInstallers());
+        listResponse(context, DatabaseSnapshot::getInstallers, AllVersions::getInstallers, InstallerVersion::getVersion, VersionIndex::isStable);
     }
 
     @OpenApi(
@@ -189,24 +239,137 @@ public class VersionsRoute {
             }
     )
     private void getLoaderJsonProfile(@NotNull Context context) {
+        ResolvedProfile resolved = resolveProfile(context, "client");
+
+        if (resolved != null) {
+            WebServer.cachedResponse(context, resolved.profile);
+        }
+    }
+
+    @OpenApi(
+            path = "/versions/loader/game/version/profile/zip",
+            methods = { HttpMethod.GET },
+            description = "Get a specific minecraft launcher loader profile for a game version, as a zip for the launcher versions folder",
+            versions = "v1",
+            pathParams = {
+                    @OpenApiParam(
+                            name = "game",
+                            description = "The game version you want to list Flint Loader versions for",
+                            required = true
+                    ),
+                    @OpenApiParam(
+                            name = "version",
+                            description = "The Flint Loader version to check for",
+                            required = true
+                    )
+            },
+            responses = {
+                    @OpenApiResponse(
+                            status = "200",
+                            description = "Zip file containing the launcher profile",
+                            content = { @OpenApiContent(type = "application/zip")}
+                    )
+            }
+    )
+    private void getLoaderZipProfile(@NotNull Context context) throws IOException {
+        ResolvedProfile resolved = resolveProfile(context, "client");
+
+        if (resolved == null)
+            return;
+
+        LoaderVersion loader = resolved.loader;
+        IntermediaryVersion mapping = resolved.mapping;
+        String profileName = ProfileUtils.getProfileName(loader.getVersion(), mapping.getVersion());
+
+        context.contentType("application/zip")
+                .header(Header.CACHE_CONTROL, "public, max-age=60")
+                .header(Header.CONTENT_DISPOSITION, "attachment; filename=\"" + profileName + ".zip\"");
+
+        byte[] zip = profileCache.getZip(loader, mapping);
+
+        if (zip != null) {
+            Metrics.RESPONSE_SIZE.observe(zip.length, context.endpointHandlerPath());
+            context.result(zip);
+            return;
+        }
+
+        // Stream the zip to the client, and keep a copy for the next request
+        ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        ProfileUtils.writeProfileZip(profileName, resolved.profile.getBody(), new TeeOutputStream(context.outputStream(), copy));
+        profileCache.putZip(loader, mapping, copy.toByteArray());
+        Metrics.RESPONSE_SIZE.observe(copy.size(), context.endpointHandlerPath());
+    }
+
+    @OpenApi(
+            path = "/versions/loader/game/version/server/json",
+            methods = { HttpMethod.GET },
+            description = "Get a specific server loader profile for a game version",
+            versions = "v1",
+            pathParams = {
+                    @OpenApiParam(
+                            name = "game",
+                            description = "The game version you want to list Flint Loader versions for",
+                            required = true
+                    ),
+                    @OpenApiParam(
+                            name = "version",
+                            description = "The Flint Loader version to check for",
+                            required = true
+                    )
+            },
+            responses = {
+                    @OpenApiResponse(
+                            status = "200",
+                            description = "JSON server profile",
+                            content = { @OpenApiContent(from = JsonObject.class )}
+                    )
+            }
+    )
+    private void getLoaderServerProfile(@NotNull Context context) {
+        ResolvedProfile resolved = resolveProfile(context, "server");
+
+        if (resolved != null) {
+            WebServer.cachedResponse(context, resolved.profile);
+        }
+    }
+
+    /**
+     * Get the rendered profile for the requested loader and game version
+     * @param context The request context. An error is written to it when the versions don't exist
+     * @param side The side of the profile, client or server
+     * @return The profile with the loader and mappings it was built from, or null when the loader or game version doesn't exist
+     */
+    @Nullable
+    private ResolvedProfile resolveProfile(Context context, String side) {
         String gameVersion = context.pathParam("gameVersion");
         String loaderVersion = context.pathParam("loaderVersion");
 
-        LoaderVersion loader = versionsDatabase.getLoaders().stream().filter(v -> v.getVersion().equals(loaderVersion)).findFirst().orElse(null);
-        IntermediaryVersion mapping = versionsDatabase.getIntermediary().stream().filter(v -> v.getVersion().equalsIgnoreCase(gameVersion)).findFirst().orElse(null);
+        VersionIndex index = versionsDatabase.getSnapshot().getIndex();
+        LoaderVersion loader = index.getLoader(loaderVersion);
+        IntermediaryVersion mapping = index.getIntermediaryIgnoreCase(gameVersion);
 
         if (loader == null) {
             context.result("No loader version found for " + gameVersion).status(400);
-            return;
+            return null;
         }
 
         if (mapping == null) {
             context.result("No mappings found for " + gameVersion).status(400);
-            return;
+            return null;
         }
 
-        LoaderInfo loaderInfo = buildLoaderInfo(loader, mapping);
-        WebServer.jsonResponse(context, ProfileUtils.buildProfileJson(loaderInfo, "client"));
+        return new ResolvedProfile(loader, mapping, profileCache.get(loader, mapping, side, () -> ProfileUtils.buildProfileJson(buildLoaderInfo(loader, mapping), side)));
+    }
+
+    /**
+     * A rendered profile, and the loader and mappings it was built from. All three come from the same generation,
+     * so routes don't look them up again after a refresh may have replaced it
+     */
+    @AllArgsConstructor
+    private static class ResolvedProfile {
+        final LoaderVersion loader;
+        final IntermediaryVersion mapping;
+        final CachedResponse profile;
     }
 
     @OpenApi(
@@ -238,8 +401,9 @@ public class VersionsRoute {
         String gameVersion = context.pathParam("gameVersion");
         String loaderVersion = context.pathParam("loaderVersion");
 
-        LoaderVersion loader = versionsDatabase.getLoaders().stream().filter(v -> v.getVersion().equals(loaderVersion)).findFirst().orElse(null);
-        IntermediaryVersion mapping = versionsDatabase.getIntermediary().stream().filter(v -> v.getVersion().equalsIgnoreCase(gameVersion)).findFirst().orElse(null);
+        VersionIndex index = versionsDatabase.getSnapshot().getIndex();
+        LoaderVersion loader = index.getLoader(loaderVersion);
+        IntermediaryVersion mapping = index.getIntermediaryIgnoreCase(gameVersion);
 
         if (loader == null) {
             context.result("No loader version found for " + gameVersion).status(400);
@@ -266,6 +430,13 @@ public class VersionsRoute {
                             required = true
                     )
             },
+            queryParams = {
+                    @OpenApiParam(name = "limit", description = "Only return this many entries. Lists are newest first"),
+                    @OpenApiParam(name = "offset", description = "Skip this many entries"),
+                    @OpenApiParam(name = "cursor", description = "Continue after the page that returned this X-Next-Cursor header"),
+                    @OpenApiParam(name = "stable", description = "Only return stable entries, when true"),
+                    @OpenApiParam(name = "fields", description = "Comma separated fields to include in every entry")
+            },
             responses = {
                     @OpenApiResponse(
                             status = "200",
@@ -277,20 +448,59 @@ public class VersionsRoute {
     private void getLoadersFiltered(@NotNull Context context) {
         String gameVersion = context.pathParam("gameVersion");
 
-        IntermediaryVersion mapping = versionsDatabase.getIntermediary().stream().filter(o -> o.getVersion().equals(gameVersion)).findFirst().orElse(null);
+        IntermediaryVersion mapping = versionsDatabase.getSnapshot().getIndex().getIntermediary(gameVersion);
 
         if (mapping == null) {
             WebServer.jsonResponse(context, new ArrayList<>());
             return;
         }
 
-        List<LoaderInfo> infos = new ArrayList<>();
+        try {
+            ListQuery query = ListQuery.parse(context);
+
+            if (query != null) {
+                DatabaseSnapshot snapshot = versionsDatabase.getSnapshot();
+                context.header(GENERATION_HEADER, Long.toString(snapshot.getGeneration()));
 
-        for (LoaderVersion loader : versionsDatabase.getLoaders()) {
-            infos.add(buildLoaderInfo(loader, mapping));
+                // Only the loaders on the page need their launcher meta
+                ListQuery.Page<LoaderVersion> page = query.apply(snapshot.getVersions().getLoaders(), LoaderVersion::getVersion, snapshot.getIndex()::isStable);
+                List<LoaderInfo> infos = new ArrayList<>(page.getItems().size());
+
+                for (LoaderVersion loader : page.getItems()) {
+                    infos.add(buildLoaderInfo(loader, mapping));
+                }
+
+                ListQuery.writeNextPage(context, page);
+                WebServer.jsonResponse(context, query.project(infos));
+                return;
+            }
+        } catch (IllegalArgumentException e) {
+            context.result(e.getMessage()).status(400);
+            return;
         }
 
-        WebServer.jsonResponse(context, infos);
+        snapshotResponse(context, snapshot -> {
+            CachedResponse response = snapshot.getLoadersForGame(gameVersion);
+
+            if (response != null)
+                return response;
+
+            List<LoaderInfo> infos = new ArrayList<>();
+            boolean complete = true;
+
+            for (LoaderVersion loader : snapshot.getVersions().getLoaders()) {
+                infos.add(buildLoaderInfo(loader, mapping));
+                complete &= launcherMetaCache.isKnown(loader.getMaven());
+            }
+
+            response = CachedResponse.onRequest(infos, snapshot.getGeneratedAt());
+
+            // A list with launcher meta that failed to load is still sent, but the next request builds it again
+            if (complete)
+                snapshot.putLoadersForGame(gameVersion, response);
+
+            return response;
+        });
     }
 
     @OpenApi(
@@ -298,6 +508,13 @@ public class VersionsRoute {
             methods = { HttpMethod.GET },
             description = "Lists all Flint Loader versions",
             versions = "v1",
+            queryParams = {
+                    @OpenApiParam(name = "limit", description = "Only return this many entries. Lists are newest first"),
+                    @OpenApiParam(name = "offset", description = "Skip this many entries"),
+                    @OpenApiParam(name = "cursor", description = "Continue after the page that returned this X-Next-Cursor header"),
+                    @OpenApiParam(name = "stable", description = "Only return stable entries, when true"),
+                    @OpenApiParam(name = "fields", description = "Comma separated fields to include in every entry")
+            },
             responses = {
                     @OpenApiResponse(
                             status = "200",
@@ -307,7 +524,7 @@ public class VersionsRoute {
             }
     )
     private void getLoaders(@NotNull Context context) {
-        WebServer.jsonResponse(context, versionsDatabase.getLoaders());
+        listResponse(context, DatabaseSnapshot::getLoaders, AllVersions::getLoaders, LoaderVersion::getVersion, VersionIndex::isStable);
     }
 
     @OpenApi(
@@ -322,6 +539,13 @@ public class VersionsRoute {
                             required = true
                     )
             },
+            queryParams = {
+                    @OpenApiParam(name = "limit", description = "Only return this many entries. Lists are newest first"),
+                    @OpenApiParam(name = "offset", description = "Skip this many entries"),
+                    @OpenApiParam(name = "cursor", description = "Continue after the page that returned this X-Next-Cursor header"),
+                    @OpenApiParam(name = "stable", description = "Only return stable entries, when true"),
+                    @OpenApiParam(name = "fields", description = "Comma separated fields to include in every entry")
+            },
             responses = {
                     @OpenApiResponse(
                             status = "200",
@@ -332,7 +556,8 @@ public class VersionsRoute {
     )
     private void getIntermediaryFiltered(@NotNull Context context) {
         String gameVersion = context.pathParam("gameVersion");
-        WebServer.jsonResponse(context, versionsDatabase.getIntermediary().stream().filter(v -> v.getVersion().equals(gameVersion)).toList());
+        VersionIndex index = versionsDatabase.getSnapshot().getIndex();
+        filteredResponse(context, index.getIntermediaryFor(gameVersion), IntermediaryVersion::getVersion, index::isStable);
     }
 
     @OpenApi(
@@ -340,6 +565,13 @@ public class VersionsRoute {
             methods = { HttpMethod.GET },
             description = "Lists all intermediary mappings",
             versions = "v1",
+            queryParams = {
+                    @OpenApiParam(name = "limit", description = "Only return this many entries. Lists are newest first"),
+                    @OpenApiParam(name = "offset", description = "Skip this many entries"),
+                    @OpenApiParam(name = "cursor", description = "Continue after the page that returned this X-Next-Cursor header"),
+                    @OpenApiParam(name = "stable", description = "Only return stable entries, when true"),
+                    @OpenApiParam(name = "fields", description = "Comma separated fields to include in every entry")
+            },
             responses = {
                     @OpenApiResponse(
                             status = "200",
@@ -349,7 +581,7 @@ public class VersionsRoute {
             }
     )
     private void getIntermediary(@NotNull Context context) {
-        WebServer.jsonResponse(context, versionsDatabase.getIntermediary());
+        listResponse(context, DatabaseSnapshot::getIntermediary, AllVersions::getIntermediary, IntermediaryVersion::getVersion, VersionIndex::isStable);
     }
 
     @OpenApi(
@@ -364,6 +596,13 @@ public class VersionsRoute {
                             required = true
                     )
             },
+            queryParams = {
+                    @OpenApiParam(name = "limit", description = "Only return this many entries. Lists are newest first"),
+                    @OpenApiParam(name = "offset", description = "Skip this many entries"),
+                    @OpenApiParam(name = "cursor", description = "Continue after the page that returned this X-Next-Cursor header"),
+                    @OpenApiParam(name = "stable", description = "Only return stable entries, when true"),
+                    @OpenApiParam(name = "fields", description = "Comma separated fields to include in every entry")
+            },
             responses = {
                     @OpenApiResponse(
                             status = "200",
@@ -375,7 +614,8 @@ public class VersionsRoute {
     private void getFilteredYarnVersions(@NotNull Context context) {
         String gameVersion = context.pathParam("gameVersion");
 
-        WebServer.jsonResponse(context, versionsDatabase.getMappings().stream().filter(v -> v.getGameVersion().equals(gameVersion)).toList());
+        VersionIndex index = versionsDatabase.getSnapshot().getIndex();
+        filteredResponse(context, index.getMappingsFor(gameVersion), YarnVersion::getVersion, index::isStable);
     }
 
     @OpenApi(
@@ -383,6 +623,13 @@ public class VersionsRoute {
             methods = { HttpMethod.GET },
             description = "Lists all yarn mappings",
             versions = "v1",
+            queryParams = {
+                    @OpenApiParam(name = "limit", description = "Only return this many entries. Lists are newest first"),
+                    @OpenApiParam(name = "offset", description = "Skip this many entries"),
+                    @OpenApiParam(name = "cursor", description = "Continue after the page that returned this X-Next-Cursor header"),
+                    @OpenApiParam(name = "stable", description = "Only return stable entries, when true"),
+                    @OpenApiParam(name = "fields", description = "Comma separated fields to include in every entry")
+            },
             responses = {
                     @OpenApiResponse(
                             status = "200",
@@ -392,7 +639,7 @@ public class VersionsRoute {
             }
     )
     private void getYarnVersions(@NotNull Context context) {
-        WebServer.jsonResponse(context, versionsDatabase.getMappings());
+        listResponse(context, DatabaseSnapshot::getMappings, AllVersions::getMappings, YarnVersion::getVersion, VersionIndex::isStable);
     }
 
     @OpenApi(
@@ -400,6 +647,13 @@ public class VersionsRoute {
             methods = { HttpMethod.GET },
             description = "Lists all supported game versions",
             versions = "v1",
+            queryParams = {
+                    @OpenApiParam(name = "limit", description = "Only return this many entries. Lists are newest first"),
+                    @OpenApiParam(name = "offset", description = "Skip this many entries"),
+                    @OpenApiParam(name = "cursor", description = "Continue after the page that returned this X-Next-Cursor header"),
+                    @OpenApiParam(name = "stable", description = "Only return stable entries, when true"),
+                    @OpenApiParam(name = "fields", description = "Comma separated fields to include in every entry")
+            },
             responses = {
                     @OpenApiResponse(
                             status = "200",
@@ -409,7 +663,7 @@ public class VersionsRoute {
             }
     )
     private void getGameVersions(@NotNull Context context) {
-        WebServer.jsonResponse(context, versionsDatabase.getGame());
+        listResponse(context, DatabaseSnapshot::getGame, AllVersions::getGame, GameVersion::getVersion, (index, game) -> game.isStable());
     }
 
     @OpenApi(
@@ -417,6 +671,12 @@ public class VersionsRoute {
             methods = { HttpMethod.GET },
             description = "Lists all supported versions",
             versions = "v1",
+            queryParams = {
+                    @OpenApiParam(name = "limit", description = "Only return this many entries of every list. Lists are newest first"),
+                    @OpenApiParam(name = "offset", description = "Skip this many entries of every list"),
+                    @OpenApiParam(name = "stable", description = "Only return stable entries of every list, when true"),
+                    @OpenApiParam(name = "fields", description = "Comma separated fields to include in every entry")
+            },
             responses = {
                     @OpenApiResponse(
                             status = "200",
@@ -426,35 +686,318 @@ public class VersionsRoute {
             }
     )
     private void getAllVersions(@NotNull Context context) {
-        WebServer.jsonResponse(context,
-                new AllVersions(
-                        versionsDatabase.getGame(),
-                        versionsDatabase.getLoaders(),
-                        versionsDatabase.getMappings(),
-                        versionsDatabase.getIntermediary(),
-                        versionsDatabase.getInstallers(),
-                        versionsDatabase.getApi())
-        );
+        ListQuery query;
+
+        try {
+            query = ListQuery.parse(context);
+        } catch (IllegalArgumentException e) {
+            context.result(e.getMessage()).status(400);
+            return;
+        }
+
+        if (query == null) {
+            snapshotResponse(context, DatabaseSnapshot::getAll);
+            return;
+        }
+
+        if (query.hasCursor()) {
+            context.result("cursor only works on single lists").status(400);
+            return;
+        }
+
+        DatabaseSnapshot snapshot = versionsDatabase.getSnapshot();
+        AllVersions versions = snapshot.getVersions();
+        context.header(GENERATION_HEADER, Long.toString(snapshot.getGeneration()));
+
+        VersionIndex index = snapshot.getIndex();
+        JsonObject response = new JsonObject();
+        response.add("game", page(query, versions.getGame(), GameVersion::getVersion, GameVersion::isStable));
+        response.add("loaders", page(query, versions.getLoaders(), LoaderVersion::getVersion, index::isStable));
+        response.add("mappings", page(query, versions.getMappings(), YarnVersion::getVersion, index::isStable));
+        response.add("intermediary", page(query, versions.getIntermediary(), IntermediaryVersion::getVersion, index::isStable));
+        response.add("installers", page(query, versions.getInstallers(), InstallerVersion::getVersion, index::isStable));
+        response.add("api", page(query, versions.getApi(), ApiVersion::getVersion, index::isStable));
+
+        WebServer.jsonResponse(context, response);
     }
 
-    private LoaderInfo buildLoaderInfo(LoaderVersion loaderVersion, IntermediaryVersion version) {
-        String[] split = loaderVersion.getMaven().split(":");
-        String path = String.format("%s/%s/%s", split[0].replaceAll("\\.", "/"), split[1], split[2]);
-        String filename = String.format("%s-%s.json", split[1], split[2]);
-        String url = String.format("%s%s/%s", Constants.FLINT_MAVEN, path, filename);
+    private static <T> JsonElement page(ListQuery query, List<T> list, Function<T, String> key, Predicate<T> isStable) {
+        return WebServer.GSON.toJsonTree(query.project(query.apply(list, key, isStable).getItems()));
+    }
 
-        JsonObject launcherMeta = null;
+    @OpenApi(
+            path = "/versions/list/latest",
+            methods = { HttpMethod.GET },
+            description = "Get the newest entry of a list, without downloading the whole list",
+            versions = "v1",
+            pathParams = {
+                    @OpenApiParam(
+                            name = "list",
+                            description = "One of game, loader, yarn, intermediary, installer or api",
+                            required = true
+                    )
+            },
+            queryParams = {
+                    @OpenApiParam(name = "stable", description = "Only consider releases, when true. For yarn and intermediary, that is the newest release of the game")
+            },
+            responses = {
+                    @OpenApiResponse(
+                            status = "200",
+                            description = "The newest entry, in the same format as the entries of the list",
+                            content = { @OpenApiContent(from = JsonObject.class )}
+                    )
+            }
+    )
+    private void getLatest(@NotNull Context context, String list) {
+        DatabaseSnapshot snapshot = versionsDatabase.getSnapshot();
+        CachedResponse latest = snapshot.getLatest(list, isStable(context));
+
+        if (latest == null) {
+            context.result("No " + list + " version found").status(400);
+            return;
+        }
+
+        context.header(GENERATION_HEADER, Long.toString(snapshot.getGeneration()));
+        WebServer.cachedResponse(context, latest);
+    }
+
+    @OpenApi(
+            path = "/versions/loader/game/latest",
+            methods = { HttpMethod.GET },
+            description = "Get the newest Flint Loader version and the intermediary mappings for a game version",
+            versions = "v1",
+            pathParams = {
+                    @OpenApiParam(
+                            name = "game",
+                            description = "The game version you want the newest Flint Loader version for",
+                            required = true
+                    )
+            },
+            queryParams = {
+                    @OpenApiParam(name = "stable", description = "Skip pre-release loader versions, when true")
+            },
+            responses = {
+                    @OpenApiResponse(
+                            status = "200",
+                            description = "The newest Flint Loader version",
+                            content = { @OpenApiContent(from = LoaderInfo.class )}
+                    )
+            }
+    )
+    private void getLatestLoaderForGame(@NotNull Context context) {
+        String gameVersion = context.pathParam("gameVersion");
+
+        VersionIndex index = versionsDatabase.getSnapshot().getIndex();
+        LoaderVersion loader = index.getLatestLoader(isStable(context));
+        IntermediaryVersion mapping = index.getIntermediaryIgnoreCase(gameVersion);
+
+        if (loader == null) {
+            context.result("No loader version found for " + gameVersion).status(400);
+            return;
+        }
+
+        if (mapping == null) {
+            context.result("No mappings found for " + gameVersion).status(400);
+            return;
+        }
+
+        WebServer.jsonResponse(context, buildLoaderInfo(loader, mapping));
+    }
+
+    @OpenApi(
+            path = "/versions/yarn/game/latest",
+            methods = { HttpMethod.GET },
+            description = "Get the newest yarn build for a game version",
+            versions = "v1",
+            pathParams = {
+                    @OpenApiParam(
+                            name = "game",
+                            description = "The game version you want the newest yarn build for",
+                            required = true
+                    )
+            },
+            responses = {
+                    @OpenApiResponse(
+                            status = "200",
+                            description = "The newest yarn build",
+                            content = { @OpenApiContent(from = YarnVersion.class )}
+                    )
+            }
+    )
+    private void getLatestYarnForGame(@NotNull Context context) {
+        String gameVersion = context.pathParam("gameVersion");
+        YarnVersion latest = versionsDatabase.getSnapshot().getIndex().getLatestMappings(gameVersion);
+
+        if (latest == null) {
+            context.result("No mappings found for " + gameVersion).status(400);
+            return;
+        }
+
+        WebServer.jsonResponse(context, latest);
+    }
+
+    @OpenApi(
+            path = "/versions/api/game/latest",
+            methods = { HttpMethod.GET },
+            description = "Get the newest Flint api version for a game version",
+            versions = "v1",
+            pathParams = {
+                    @OpenApiParam(
+                            name = "game",
+                            description = "The game version you want the newest Flint api version for",
+                            required = true
+                    )
+            },
+            queryParams = {
+                    @OpenApiParam(name = "stable", description = "Skip pre-release api versions, when true")
+            },
+            responses = {
+                    @OpenApiResponse(
+                            status = "200",
+                            description = "The newest Flint api version",
+                            content = { @OpenApiContent(from = ApiVersion.class )}
+                    )
+            }
+    )
+    private void getLatestApiForGame(@NotNull Context context) {
+        String gameVersion = context.pathParam("gameVersion");
+        ApiVersion latest = versionsDatabase.getSnapshot().getIndex().getLatestApi(gameVersion, isStable(context));
+
+        if (latest == null) {
+            context.result("No api version found for " + gameVersion).status(400);
+            return;
+        }
+
+        WebServer.jsonResponse(context, latest);
+    }
+
+    private static boolean isStable(Context context) {
+        return Boolean.parseBoolean(context.queryParam("stable"));
+    }
+
+    @OpenApi(
+            path = "/versions/changes",
+            methods = { HttpMethod.GET },
+            description = "Lists the versions added or removed since an older generation of the database. The generation of every list response is sent in the X-Generation header",
+            versions = "v1",
+            queryParams = {
+                    @OpenApiParam(
+                            name = "since",
+                            description = "The generation you have a copy of",
+                            required = true
+                    )
+            },
+            responses = {
+                    @OpenApiResponse(
+                            status = "200",
+                            description = "The changes per list. Changed entries are listed as removed and added",
+                            content = { @OpenApiContent(from = VersionChanges.class )}
+                    ),
+                    @OpenApiResponse(
+                            status = "410",
+                            description = "The generation is too old or unknown, download the full lists again"
+                    )
+            }
+    )
+    private void getChanges(@NotNull Context context) {
+        long since;
 
         try {
-            launcherMeta = RemoteJsonReader.readJsonFromUrl(url);
-        } catch (Exception e) {
-            e.printStackTrace();
+            since = Long.parseLong(context.queryParam("since"));
+        } catch (NumberFormatException e) {
+            context.result("The since query parameter must be a generation number").status(400);
+            return;
+        }
+
+        DatabaseSnapshot snapshot = versionsDatabase.getSnapshot();
+        AllVersions older = since == snapshot.getGeneration() ? snapshot.getVersions() : versionsDatabase.getGeneration(since);
+
+        context.header(GENERATION_HEADER, Long.toString(snapshot.getGeneration()));
+
+        if (older == null || since > snapshot.getGeneration()) {
+            context.result("Generation " + since + " is no longer available, download the full lists again").status(410);
+            return;
         }
 
+        WebServer.cachedResponse(context, snapshot.getChangesSince(since, older));
+    }
+
+    /**
+     * Send a full list of the current generation, or the requested page of it when list parameters were given
+     * @param context The request context
+     * @param rendered Picks the pre-rendered full list from the snapshot
+     * @param list Picks the list from the generation
+     * @param key Gets the version of an entry
+     * @param isStable Decides if an entry is stable, with the index of the generation
+     */
+    private <T> void listResponse(Context context, Function<DatabaseSnapshot, CachedResponse> rendered, Function<AllVersions, List<T>> list,
+                                  Function<T, String> key, BiPredicate<VersionIndex, T> isStable) {
+        try {
+            ListQuery query = ListQuery.parse(context);
+
+            if (query == null) {
+                snapshotResponse(context, rendered);
+                return;
+            }
+
+            DatabaseSnapshot snapshot = versionsDatabase.getSnapshot();
+            context.header(GENERATION_HEADER, Long.toString(snapshot.getGeneration()));
+            pagedResponse(context, query, list.apply(snapshot.getVersions()), key, entry -> isStable.test(snapshot.getIndex(), entry));
+        } catch (IllegalArgumentException e) {
+            context.result(e.getMessage()).status(400);
+        }
+    }
+
+    /**
+     * Send a list that was filtered for a game version, paged when list parameters were given
+     */
+    private <T> void filteredResponse(Context context, List<T> list, Function<T, String> key, Predicate<T> isStable) {
+        try {
+            ListQuery query = ListQuery.parse(context);
+
+            if (query == null) {
+                WebServer.jsonResponse(context, list);
+                return;
+            }
+
+            pagedResponse(context, query, list, key, isStable);
+        } catch (IllegalArgumentException e) {
+            context.result(e.getMessage()).status(400);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException Thrown when the page can't be selected, see {@link ListQuery#apply}
+     */
+    private <T> void pagedResponse(Context context, ListQuery query, List<T> list, Function<T, String> key, Predicate<T> isStable) {
+        ListQuery.Page<T> page = query.apply(list, key, isStable);
+        ListQuery.writeNextPage(context, page);
+        WebServer.jsonResponse(context, query.project(page.getItems()));
+    }
+
+    /**
+     * Send a pre-rendered response of the current generation, with its generation number
+     * @param context The request context
+     * @param response Picks the response from the snapshot
+     */
+    private void snapshotResponse(Context context, Function<DatabaseSnapshot, CachedResponse> response) {
+        DatabaseSnapshot snapshot = versionsDatabase.getSnapshot();
+        context.header(GENERATION_HEADER, Long.toString(snapshot.getGeneration()));
+        WebServer.cachedResponse(context, response.apply(snapshot));
+    }
+
+    /**
+     * @param loaderVersion The loader
+     * @param version The intermediary mappings of the game version
+     * @return The loader info, with the launcher meta of the loader. The launcher meta is empty when it could not be loaded
+     */
+    public static LoaderInfo buildLoaderInfo(LoaderVersion loaderVersion, IntermediaryVersion version) {
+        JsonObject launcherMeta = launcherMetaCache.get(loaderVersion.getMaven());
+
         if (launcherMeta == null) {
             launcherMeta = new JsonObject();
         }
 
         return new LoaderInfo(loaderVersion, version, launcherMeta);
     }
-}
+}
\ No newline at end of file